@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.github.thinwind.clock.EventRing;
+
+/**
+ *
+ * EventRing的放入和消费吞吐
+ * 
+ * 放入时后台有一个消费者线程不停推进，保证内存不会无限增长
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-29  10:40
+ *
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventRingBenchmark {
+
+    private static final Object EVENT = new Object();
+
+    @State(Scope.Benchmark)
+    public static class PutState {
+
+        @Param({"64", "512", "4096"})
+        int ringSize;
+
+        @Param({"16", "256"})
+        int slotSize;
+
+        EventRing<Object> ring;
+
+        volatile boolean running;
+
+        Thread consumer;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ring = new EventRing<>(ringSize, slotSize);
+            running = true;
+            consumer = new Thread(() -> {
+                while (running) {
+                    ring.comsume(e -> {
+                    });
+                }
+            });
+            consumer.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            running = false;
+            consumer.join();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(1)
+    public void put1Producer(PutState state) {
+        state.ring.put(1 + ThreadLocalRandom.current().nextInt(state.ringSize - 1), EVENT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(4)
+    public void put4Producers(PutState state) {
+        state.ring.put(1 + ThreadLocalRandom.current().nextInt(state.ringSize - 1), EVENT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(16)
+    public void put16Producers(PutState state) {
+        state.ring.put(1 + ThreadLocalRandom.current().nextInt(state.ringSize - 1), EVENT);
+    }
+
+    @State(Scope.Thread)
+    public static class DrainState {
+
+        static final int EVENTS = 65536;
+
+        @Param({"64", "512", "4096"})
+        int ringSize;
+
+        @Param({"16", "256"})
+        int slotSize;
+
+        EventRing<Object> ring;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ring = new EventRing<>(ringSize, slotSize);
+        }
+
+        @Setup(Level.Invocation)
+        public void fill() {
+            for (int i = 0; i < EVENTS; i++) {
+                ring.put(1 + i % (ringSize - 1), EVENT);
+            }
+        }
+    }
+
+    /**
+     * 消费整圈，每次操作对应一个事件
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(DrainState.EVENTS)
+    public void drain(DrainState state, Blackhole blackhole) {
+        for (int i = 0; i < state.ringSize; i++) {
+            state.ring.comsume(blackhole::consume);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock.bench;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.thinwind.clock.EventRing;
+
+/**
+ *
+ * 端到端延迟：从放入一个下一tick到期的事件，到消费者线程处理完它
+ * 
+ * 消费者线程一直推进，不按真实时间等待，测的是调度结构本身的开销
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-29  11:15
+ *
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyBenchmark {
+
+    /**
+     * 每种结构单独一个状态，只启动被测结构的消费者线程，避免空转线程互相抢CPU
+     */
+    @State(Scope.Benchmark)
+    public abstract static class Target {
+
+        @Param({"512"})
+        int ringSize;
+
+        @Param({"256"})
+        int slotSize;
+
+        volatile long fired;
+
+        volatile boolean running;
+
+        long sequence;
+
+        Thread consumer;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            running = true;
+            init();
+            consumer = new Thread(this::drain);
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            running = false;
+            consumer.join();
+        }
+
+        abstract void init();
+
+        abstract void drain();
+
+        abstract void schedule(long seq);
+
+        long roundTrip() {
+            long seq = ++sequence;
+            schedule(seq);
+            long f;
+            while ((f = fired) != seq) {
+                Thread.onSpinWait();
+            }
+            return f;
+        }
+    }
+
+    public static class RingTarget extends Target {
+
+        EventRing<Long> ring;
+
+        @Override
+        void init() {
+            ring = new EventRing<>(ringSize, slotSize);
+        }
+
+        @Override
+        void drain() {
+            while (running) {
+                ring.comsume(e -> fired = e);
+            }
+        }
+
+        @Override
+        void schedule(long seq) {
+            ring.put(1, seq);
+        }
+    }
+
+    public static class WheelTarget extends Target {
+
+        PlainHashedWheel<Long> wheel;
+
+        @Override
+        void init() {
+            wheel = new PlainHashedWheel<>(ringSize);
+        }
+
+        @Override
+        void drain() {
+            while (running) {
+                wheel.tick(e -> fired = e);
+            }
+        }
+
+        @Override
+        void schedule(long seq) {
+            wheel.schedule(1, seq);
+        }
+    }
+
+    public static class QueueTarget extends Target {
+
+        DelayQueue<Expiring> queue;
+
+        @Override
+        void init() {
+            queue = new DelayQueue<>();
+        }
+
+        @Override
+        void drain() {
+            try {
+                while (running) {
+                    Expiring e = queue.poll(10, TimeUnit.MILLISECONDS);
+                    if (e != null) {
+                        fired = e.sequence;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        void schedule(long seq) {
+            queue.offer(new Expiring(System.nanoTime(), seq));
+        }
+    }
+
+    public static class PoolTarget extends Target {
+
+        ScheduledThreadPoolExecutor executor;
+
+        @Override
+        void init() {
+            executor = new ScheduledThreadPoolExecutor(1);
+        }
+
+        @Override
+        void drain() {
+            //任务由线程池自己的线程执行
+        }
+
+        @Override
+        public void tearDown() throws InterruptedException {
+            executor.shutdownNow();
+            super.tearDown();
+        }
+
+        @Override
+        void schedule(long seq) {
+            executor.schedule(() -> {
+                fired = seq;
+            }, 0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Benchmark
+    public long eventRing(RingTarget target) {
+        return target.roundTrip();
+    }
+
+    @Benchmark
+    public long hashedWheel(WheelTarget target) {
+        return target.roundTrip();
+    }
+
+    @Benchmark
+    public long delayQueue(QueueTarget target) {
+        return target.roundTrip();
+    }
+
+    @Benchmark
+    public long scheduledThreadPool(PoolTarget target) {
+        return target.roundTrip();
+    }
+
+    static final class Expiring implements Delayed {
+
+        final long deadline;
+
+        final long sequence;
+
+        Expiring(long deadline, long sequence) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(deadline, ((Expiring) o).deadline);
+        }
+    }
+}
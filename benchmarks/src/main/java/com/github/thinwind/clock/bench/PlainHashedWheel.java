@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock.bench;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ *
+ * 对比用的朴素哈希时间轮
+ * 
+ * 每个桶一个ArrayDeque，用桶对象加锁，和常见的手写实现一致
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-29  10:20
+ *
+ */
+final class PlainHashedWheel<T> {
+
+    private final ArrayDeque<T>[] buckets;
+
+    private final int mask;
+
+    private volatile long cursor = 0;
+
+    @SuppressWarnings("unchecked")
+    PlainHashedWheel(int size) {
+        buckets = (ArrayDeque<T>[]) new ArrayDeque<?>[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        mask = size - 1;
+    }
+
+    void schedule(int ticks, T event) {
+        ArrayDeque<T> bucket = buckets[(int) (cursor + Math.max(ticks, 1)) & mask];
+        synchronized (bucket) {
+            bucket.add(event);
+        }
+    }
+
+    boolean cancel(int ticks, T event) {
+        ArrayDeque<T> bucket = buckets[(int) (cursor + Math.max(ticks, 1)) & mask];
+        synchronized (bucket) {
+            return bucket.removeLastOccurrence(event);
+        }
+    }
+
+    void tick(Consumer<? super T> consumer) {
+        long next = cursor + 1;
+        cursor = next;
+        ArrayDeque<T> bucket = buckets[(int) next & mask];
+        synchronized (bucket) {
+            T event;
+            while ((event = bucket.poll()) != null) {
+                consumer.accept(event);
+            }
+        }
+    }
+}
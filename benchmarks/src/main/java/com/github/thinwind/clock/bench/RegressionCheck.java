@@ -0,0 +1,229 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ *
+ * 比较两次JMH的JSON结果（-rf json），发现退化时以状态码1退出
+ * 
+ * 用法：RegressionCheck baseline.json current.json [允许退化的百分比，默认10]
+ * 
+ * 吞吐类（thrpt）分数变小算退化，其余模式（avgt、sample、ss）分数变大算退化。
+ * 分数为NaN、基线为0、基线中的基准在这次结果中缺失，都按失败处理
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-29  14:05
+ *
+ */
+public final class RegressionCheck {
+
+    private RegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionCheck <baseline.json> <current.json> [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.1;
+        Map<String, Result> baseline = load(args[0]);
+        Map<String, Result> current = load(args[1]);
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW         %s %.3f %s%n", entry.getKey(), now.score, now.unit);
+                continue;
+            }
+            if (Double.isNaN(now.score) || Double.isNaN(before.score) || before.score == 0) {
+                //没有结果或者基线为0时无法比较，不能当作通过
+                regressions++;
+                System.out.printf("%-11s %s %.3f -> %.3f %s%n", "INVALID", entry.getKey(),
+                        before.score, now.score, now.unit);
+                continue;
+            }
+            double change = (now.score - before.score) / before.score;
+            boolean regressed = "thrpt".equals(now.mode) ? change < -threshold : change > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-11s %s %.3f -> %.3f %s (%+.1f%%)%n", regressed ? "REGRESSION" : "OK",
+                    entry.getKey(), before.score, now.score, now.unit, change * 100);
+        }
+        for (Map.Entry<String, Result> entry : baseline.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                //基线中有而这次没有跑出来的基准，可能是崩溃或者被改名
+                regressions++;
+                System.out.printf("%-11s %s %.3f %s%n", "MISSING", entry.getKey(),
+                        entry.getValue().score, entry.getValue().unit);
+            }
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " failure(s), regression threshold " + threshold * 100 + "%");
+            System.exit(1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Result> load(String file) throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        Map<String, Result> results = new TreeMap<>();
+        for (Object o : (List<Object>) new Parser(json).parse()) {
+            Map<String, Object> run = (Map<String, Object>) o;
+            Map<String, Object> metric = (Map<String, Object>) run.get("primaryMetric");
+            StringBuilder key = new StringBuilder((String) run.get("benchmark"));
+            key.append(" t=").append(run.get("threads"));
+            Map<String, Object> params = (Map<String, Object>) run.get("params");
+            if (params != null) {
+                for (Map.Entry<String, Object> p : new TreeMap<>(params).entrySet()) {
+                    key.append(' ').append(p.getKey()).append('=').append(p.getValue());
+                }
+            }
+            //没有结果时JMH会写成字符串"NaN"
+            Object score = metric.get("score");
+            results.put(key.toString(), new Result((String) run.get("mode"),
+                    score instanceof Number ? ((Number) score).doubleValue() : Double.NaN,
+                    (String) metric.get("scoreUnit")));
+        }
+        return results;
+    }
+
+    static final class Result {
+
+        final String mode;
+
+        final double score;
+
+        final String unit;
+
+        Result(String mode, double score, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * 只够读JMH结果的最小JSON解析器，避免给基准模块再引入依赖
+     */
+    static final class Parser {
+
+        private final String s;
+
+        private int i;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Object parse() {
+            skip();
+            char c = s.charAt(i);
+            if (c == '{') {
+                Map<String, Object> map = new LinkedHashMap<>();
+                i++;
+                skip();
+                if (s.charAt(i) == '}') {
+                    i++;
+                    return map;
+                }
+                do {
+                    skip();
+                    String name = string();
+                    skip();
+                    expect(':');
+                    map.put(name, parse());
+                    skip();
+                } while (s.charAt(i++) == ',');
+                return map;
+            }
+            if (c == '[') {
+                List<Object> list = new ArrayList<>();
+                i++;
+                skip();
+                if (s.charAt(i) == ']') {
+                    i++;
+                    return list;
+                }
+                do {
+                    list.add(parse());
+                    skip();
+                } while (s.charAt(i++) == ',');
+                return list;
+            }
+            if (c == '"') {
+                return string();
+            }
+            int start = i;
+            while (i < s.length() && ",]} \t\r\n".indexOf(s.charAt(i)) < 0) {
+                i++;
+            }
+            String token = s.substring(start, i);
+            switch (token) {
+                case "true":
+                    return Boolean.TRUE;
+                case "false":
+                    return Boolean.FALSE;
+                case "null":
+                    return null;
+                default:
+                    return Double.valueOf(token);
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            char c;
+            while ((c = s.charAt(i++)) != '"') {
+                if (c == '\\') {
+                    c = s.charAt(i++);
+                    if (c == 'u') {
+                        c = (char) Integer.parseInt(s.substring(i, i + 4), 16);
+                        i += 4;
+                    } else if (c == 'n') {
+                        c = '\n';
+                    } else if (c == 't') {
+                        c = '\t';
+                    }
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        }
+
+        private void expect(char c) {
+            if (s.charAt(i++) != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + (i - 1));
+            }
+        }
+
+        private void skip() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+                i++;
+            }
+        }
+    }
+}
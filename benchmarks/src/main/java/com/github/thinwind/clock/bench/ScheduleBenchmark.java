@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock.bench;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.thinwind.clock.EventHandle;
+import com.github.thinwind.clock.EventRing;
+
+/**
+ *
+ * 定时后立即取消的吞吐，这是超时类场景最常见的用法
+ * 
+ * 每次操作放入再取消，各结构的大小保持稳定。
+ * EventRing取消的句柄要等消费时才清理，每次操作之后再消费一个tick，
+ * 每个槽位每ringSize次操作清理一次
+ * 
+ * 延迟是随机的tick数，DelayQueue和线程池按每个tick的时长换算成纳秒
+ * 
+ * 生产者线程数用 -t 指定
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-29  11:40
+ *
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ScheduleBenchmark {
+
+    private static final Object EVENT = new Object();
+
+    private static final Runnable TASK = () -> {
+    };
+
+    private static final Consumer<Object> DISCARD = e -> {
+    };
+
+    //按时间调度的结构中一个tick的时长
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Param({"512"})
+    int ringSize;
+
+    @Param({"256"})
+    int slotSize;
+
+    EventRing<Object> ring;
+
+    PlainHashedWheel<Object> wheel;
+
+    DelayQueue<LatencyBenchmark.Expiring> delayQueue;
+
+    ScheduledThreadPoolExecutor executor;
+
+    //消费者只能有一个，多个生产者线程时由抢到的线程消费
+    final AtomicBoolean draining = new AtomicBoolean(false);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ring = new EventRing<>(ringSize, slotSize);
+        wheel = new PlainHashedWheel<>(ringSize);
+        delayQueue = new DelayQueue<>();
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean eventRing() {
+        EventHandle<Object> handle = ring.putCancellable(delay(), EVENT);
+        boolean cancelled = handle.cancel();
+        if (draining.compareAndSet(false, true)) {
+            try {
+                ring.comsume(DISCARD);
+            } finally {
+                draining.set(false);
+            }
+        }
+        return cancelled;
+    }
+
+    @Benchmark
+    public boolean hashedWheel() {
+        int delay = delay();
+        wheel.schedule(delay, EVENT);
+        return wheel.cancel(delay, EVENT);
+    }
+
+    @Benchmark
+    public boolean delayQueue() {
+        LatencyBenchmark.Expiring e = new LatencyBenchmark.Expiring(
+                System.nanoTime() + delay() * TICK_NANOS, 0);
+        delayQueue.offer(e);
+        return delayQueue.remove(e);
+    }
+
+    @Benchmark
+    public boolean scheduledThreadPool() {
+        ScheduledFuture<?> future = executor.schedule(TASK, delay() * TICK_NANOS,
+                TimeUnit.NANOSECONDS);
+        return future.cancel(false);
+    }
+
+    private int delay() {
+        return 1 + ThreadLocalRandom.current().nextInt(ringSize - 1);
+    }
+}
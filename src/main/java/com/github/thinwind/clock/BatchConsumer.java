@@ -0,0 +1,33 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.List;
+
+/**
+ *
+ * 批量处理到期事件，见{@link EventRing#advanceTo(long, BatchConsumer)}
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-15  09:40
+ *
+ */
+@FunctionalInterface
+public interface BatchConsumer<T> {
+
+    /**
+     * @param events 按tick顺序排列的一批事件，列表会被复用，不能在回调之外持有
+     */
+    void accept(List<T> events);
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * 槽位已满时生产者park，等待消费者腾出空间
+ * 
+ * 等待期间不持有忙标记，不会拖住消费者。超时或被中断时放弃，中断标记会保留
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-06  11:05
+ *
+ */
+public final class BlockingOverflowPolicy extends OverflowPolicy {
+
+    private static final long MAX_PARK_NANOS = 100_000;
+
+    private final long timeoutNanos;
+
+    /**
+     * @param capacity 每个槽位最多容纳的未消费事件数
+     * @param timeout 最长等待时间
+     */
+    public BlockingOverflowPolicy(int capacity, long timeout, TimeUnit unit) {
+        super(capacity);
+        this.timeoutNanos = unit.toNanos(timeout);
+        if (timeoutNanos < 0) {
+            throw new IllegalArgumentException(
+                    "Timeout must not be negative. But got [" + timeout + " " + unit + "]");
+        }
+    }
+
+    @Override
+    long retry(SlotSequencer sequencer, EventSlot<?> slot, long tick) {
+        sequencer.release(tick);
+        long deadline = System.nanoTime() + timeoutNanos;
+        long parkNanos = 1_000;
+        //消费者到达该tick后槽位会被清空，重新认领时顺延到下一个待消费的tick
+        while (slot.size() >= capacity() && sequencer.cursor() < tick) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                return -1;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, parkNanos));
+            parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
+        }
+        return sequencer.claimTick(tick);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *
+ * 使用锁和条件变量阻塞消费者
+ * 
+ * 只有消费者确实在等待时，生产者才会加锁唤醒
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-09  16:50
+ *
+ */
+public final class BlockingWaitStrategy implements WaitStrategy {
+
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition freeCondition = lock.newCondition();
+
+    private volatile boolean waiting = false;
+
+    @Override
+    public void waitFor(BusyMap busyMap, int index) {
+        if (!busyMap.isBusy(index)) {
+            return;
+        }
+        lock.lock();
+        try {
+            waiting = true;
+            while (busyMap.isBusy(index)) {
+                freeCondition.awaitUninterruptibly();
+            }
+        } finally {
+            waiting = false;
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        if (!waiting) {
+            return;
+        }
+        lock.lock();
+        try {
+            freeCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * 槽位忙标记
+ * 
+ * 一个槽位可能同时有多个生产者在写入，单个bit无法表示，
+ * 因此每个槽位占用一个long中的16位作为计数，一个long打包4个槽位，
+ * 计数不为0即表示该槽位忙。所有修改都是对整个long的原子加减，线程安全。
+ * 
+ * 同一槽位同时写入的生产者不能超过65535个
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-09  16:05
+ *
+ */
+public final class BusyMap {
+
+    private static final int LANE_BITS = 16;
+
+    //log2(每个long打包的槽位数)
+    private static final int LANES_SHIFT = 2;
+
+    private static final int LANE_INDEX_MASK = (1 << LANES_SHIFT) - 1;
+
+    private static final long LANE_MASK = (1L << LANE_BITS) - 1;
+
+    private final int size;
+
+    private final AtomicLongArray words;
+
+    public BusyMap(int size) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + LANE_INDEX_MASK) >>> LANES_SHIFT);
+    }
+
+    /**
+     * 标记槽位忙
+     */
+    void increment(int index) {
+        words.getAndAdd(index >>> LANES_SHIFT, 1L << shift(index));
+    }
+
+    /**
+     * 释放一次忙标记
+     * 
+     * @return 槽位是否已经空闲
+     */
+    boolean decrement(int index) {
+        long word = words.addAndGet(index >>> LANES_SHIFT, -(1L << shift(index)));
+        return lane(word, index) == 0;
+    }
+
+    public boolean isBusy(int index) {
+        return lane(words.get(index >>> LANES_SHIFT), index) != 0;
+    }
+
+    /**
+     * 正在写入槽位的生产者个数
+     */
+    public int busyCount(int index) {
+        return (int) lane(words.get(index >>> LANES_SHIFT), index);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int shift(int index) {
+        return (index & LANE_INDEX_MASK) * LANE_BITS;
+    }
+
+    private static long lane(long word, int index) {
+        return (word >>> shift(index)) & LANE_MASK;
+    }
+}
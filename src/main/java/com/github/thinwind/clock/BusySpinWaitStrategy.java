@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+/**
+ *
+ * 忙等策略
+ * 
+ * 延迟最低，适用于消费者线程绑定独立核心的场景
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-09  16:40
+ *
+ */
+public final class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void waitFor(BusyMap busyMap, int index) {
+        while (busyMap.isBusy(index)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {}
+}
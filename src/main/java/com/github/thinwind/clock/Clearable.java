@@ -17,12 +17,18 @@ package com.github.thinwind.clock;
 
 /**
  *
- * TODO Clearable说明
+ * 可以被清理后复用的事件
+ * 
+ * 配合{@link EventPool}使用，事件被消费之后调用{@link #clear()}，再放回池中
  *
  * @author Shang Yehua <niceshang@outlook.com>
  * @since 2022-06-04  09:52
  *
  */
 public interface Clearable {
+
+    /**
+     * 清除事件的状态，释放它持有的引用
+     */
     void clear();
 }
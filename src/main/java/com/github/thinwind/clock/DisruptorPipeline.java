@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.EventHandlerGroup;
+import com.lmax.disruptor.dsl.ProducerType;
+
+/**
+ *
+ * 把到期事件发布到Disruptor的RingBuffer中，由下游处理器处理
+ * 
+ * 计时和业务处理分离，消费者线程只负责发布。
+ * 处理器通过{@link #handleEventsWith(EventHandler...)}和{@link #then(EventHandler...)}
+ * 按阶段组织，同一阶段的处理器并行，后一阶段等前一阶段全部处理完。
+ * 启动时在最后一个阶段之后追加一个清理阶段，释放容器对事件的引用，
+ * 已经处理完的事件不会一直被RingBuffer持有到槽位被覆盖。
+ * 
+ * 使用方式:
+ * <pre>
+ * DisruptorPipeline&lt;Task&gt; pipeline = new DisruptorPipeline&lt;&gt;(1024);
+ * pipeline.handleEventsWith(decoder).then(worker1, worker2);
+ * pipeline.start();
+ * ring.comsume(pipeline);
+ * </pre>
+ * 
+ * RingBuffer写满时发布会阻塞，形成对消费者线程的背压
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-15  10:05
+ *
+ */
+public final class DisruptorPipeline<T> implements Consumer<T> {
+
+    private static final EventTranslatorOneArg<ExpiredEvent<Object>, Object> TRANSLATOR =
+            (holder, sequence, event) -> holder.set(event);
+
+    private static final EventHandler<ExpiredEvent<?>> CLEARER =
+            (holder, sequence, endOfBatch) -> holder.set(null);
+
+    private final Disruptor<ExpiredEvent<T>> disruptor;
+
+    private volatile RingBuffer<ExpiredEvent<T>> ringBuffer;
+
+    //最后一个阶段，清理阶段接在它后面
+    private EventHandlerGroup<ExpiredEvent<T>> tail;
+
+    /**
+     * 默认只有一个消费者线程发布事件，使用阻塞等待策略
+     * 
+     * @param bufferSize RingBuffer大小，必须是2的幂
+     */
+    public DisruptorPipeline(int bufferSize) {
+        this(bufferSize, r -> {
+            Thread thread = new Thread(r, "legendary-clock-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        }, ProducerType.SINGLE, new BlockingWaitStrategy());
+    }
+
+    /**
+     * @param bufferSize RingBuffer大小，必须是2的幂
+     * @param threadFactory 处理器线程工厂
+     * @param producerType 多个事件环共用一个管道时使用{@link ProducerType#MULTI}
+     * @param waitStrategy 处理器等待策略
+     */
+    public DisruptorPipeline(int bufferSize, ThreadFactory threadFactory,
+            ProducerType producerType, WaitStrategy waitStrategy) {
+        disruptor = new Disruptor<>(ExpiredEvent::new, bufferSize, threadFactory, producerType,
+                waitStrategy);
+    }
+
+    /**
+     * 添加直接处理发布事件的处理器，与已有的第一阶段处理器并行
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final synchronized DisruptorPipeline<T> handleEventsWith(
+            EventHandler<? super ExpiredEvent<T>>... handlers) {
+        checkNotStarted();
+        EventHandlerGroup<ExpiredEvent<T>> group = disruptor.handleEventsWith(handlers);
+        tail = tail == null ? group : tail.and(group);
+        return this;
+    }
+
+    /**
+     * 添加一个新阶段，等之前所有的处理器处理完之后再处理
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final synchronized DisruptorPipeline<T> then(
+            EventHandler<? super ExpiredEvent<T>>... handlers) {
+        checkNotStarted();
+        if (tail == null) {
+            throw new IllegalStateException("No handlers to follow. Call handleEventsWith first.");
+        }
+        tail = tail.then(handlers);
+        return this;
+    }
+
+    public synchronized void start() {
+        checkNotStarted();
+        if (tail != null) {
+            tail.then(CLEARER);
+        }
+        ringBuffer = disruptor.start();
+    }
+
+    private void checkNotStarted() {
+        if (ringBuffer != null) {
+            throw new IllegalStateException("DisruptorPipeline has already been started.");
+        }
+    }
+
+    /**
+     * 等待已发布的事件处理完后停止
+     */
+    public void shutdown() {
+        disruptor.shutdown();
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void accept(T t) {
+        if (ringBuffer == null) {
+            throw new IllegalStateException("DisruptorPipeline has not been started.");
+        }
+        ringBuffer.publishEvent((EventTranslatorOneArg) TRANSLATOR, t);
+    }
+
+    /**
+     * RingBuffer中剩余的空间
+     */
+    public long remainingCapacity() {
+        return disruptor.getRingBuffer().remainingCapacity();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.Arrays;
+
+/**
+ *
+ * 批量放入事件的构建器
+ * 
+ * 先在生产者本地按偏移量归类，{@link #flush()}时每个偏移量只调用一次
+ * {@link EventRing#putAll(int, Object[])}。
+ * 偏移量是相对flush时的位置计算的。
+ * 
+ * 非线程安全，每个生产者线程使用自己的构建器，flush之后可以继续复用
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-14  11:05
+ *
+ */
+public final class EventBatch<T> {
+
+    private static final Object[] EMPTY = {};
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final EventRing<T> ring;
+
+    //每个偏移量上暂存的事件
+    private final Object[][] buffers;
+
+    private final int[] counts;
+
+    //有事件的偏移量，按加入顺序
+    private final int[] touched;
+
+    private int touchedCount;
+
+    private int size;
+
+    EventBatch(EventRing<T> ring) {
+        this.ring = ring;
+        int ringSize = ring.ringSize();
+        buffers = new Object[ringSize][];
+        Arrays.fill(buffers, EMPTY);
+        counts = new int[ringSize];
+        touched = new int[ringSize];
+    }
+
+    public EventBatch<T> add(int pos, T t) {
+        if (pos < 0 || pos >= counts.length) {
+            throw new IllegalArgumentException(
+                    "Position must be in [0, " + counts.length + "). But got [" + pos + "]");
+        }
+        if (pos == 0) {
+            pos = 1;
+        }
+        int count = counts[pos];
+        if (count == 0) {
+            touched[touchedCount++] = pos;
+        }
+        Object[] buffer = buffers[pos];
+        if (count == buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(INITIAL_CAPACITY, count << 1));
+            buffers[pos] = buffer;
+        }
+        buffer[count] = t;
+        counts[pos] = count + 1;
+        size++;
+        return this;
+    }
+
+    /**
+     * 暂存的事件数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 把暂存的事件放入事件环
+     * 
+     * 无论是否成功都会清空暂存的事件
+     */
+    public void flush() {
+        try {
+            for (int i = 0; i < touchedCount; i++) {
+                int pos = touched[i];
+                ring.putAll(pos, buffers[pos], 0, counts[pos]);
+            }
+        } finally {
+            for (int i = 0; i < touchedCount; i++) {
+                int pos = touched[i];
+                Arrays.fill(buffers[pos], 0, counts[pos], null);
+                counts[pos] = 0;
+            }
+            touchedCount = 0;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import com.github.thinwind.lang.BytesRange;
+
+/**
+ *
+ * 事件的序列化方式，用于{@link OffHeapEventRing}
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-20  09:30
+ *
+ */
+public interface EventCodec<T> {
+
+    /**
+     * 把事件编码成字节
+     * 
+     * 返回的内容会被立即复制走，可以复用同一块缓冲区
+     */
+    BytesRange encode(T event);
+
+    /**
+     * 从字节中解码出事件
+     * 
+     * @param bytes 只在本次调用期间有效，不能保存
+     */
+    T decode(BytesRange bytes);
+}
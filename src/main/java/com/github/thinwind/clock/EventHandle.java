@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ *
+ * 可取消事件的句柄
+ * 
+ * 句柄本身代替事件存放在槽位中，取消时只修改状态并释放事件引用(墓碑)，
+ * 复杂度O(1)，消费者消费槽位时会跳过已取消的句柄
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-11  10:20
+ *
+ */
+public final class EventHandle<T> {
+
+    private static final int PENDING = 0;
+
+    private static final int CANCELLED = 1;
+
+    private static final int EXPIRED = 2;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<EventHandle> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(EventHandle.class, "state");
+
+    private final EventRing<T> ring;
+
+    //在写入槽位之前设置，溢出策略顺延时会改变
+    long tick;
+
+    private volatile T event;
+
+    private volatile int state = PENDING;
+
+    EventHandle(EventRing<T> ring, T event) {
+        this.ring = ring;
+        this.event = event;
+    }
+
+    /**
+     * 取消事件
+     * 
+     * @return 事件已经到期或已经被取消时返回false
+     */
+    public boolean cancel() {
+        if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+            return false;
+        }
+        event = null;
+        ring.onCancelled();
+        return true;
+    }
+
+    /**
+     * 由消费者调用，标记事件到期
+     * 
+     * @return 事件已经被取消时返回false
+     */
+    boolean expire() {
+        return STATE.compareAndSet(this, PENDING, EXPIRED);
+    }
+
+    public boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    public boolean isExpired() {
+        return state == EXPIRED;
+    }
+
+    /**
+     * 事件所在的tick
+     */
+    public long tick() {
+        return tick;
+    }
+
+    /**
+     * 事件本身，取消之后返回null
+     */
+    public T event() {
+        return event;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ *
+ * 可复用事件的对象池
+ * 
+ * 池分为多个条带，每个条带是一个定长的数组，通过CAS存取，不需要分配节点。
+ * 生产者优先从自己线程对应的条带获取，取不到再依次查看其它条带，都没有时新建；
+ * 归还时随机选择条带，条带满了就丢弃，交给GC回收。
+ * 每个条带记录池中对象的个数，空的条带获取时直接跳过，满的条带归还时直接丢弃，
+ * 池被取空时获取一次只需要检查每个条带的计数。
+ * 
+ * 使用方式:
+ * <pre>
+ * EventPool&lt;Task&gt; pool = new EventPool&lt;&gt;(8, 256, Task::new);
+ * Consumer&lt;Task&gt; handler = pool.recycling(task -&gt; task.run());
+ * ring.put(10, pool.acquire().init(...));
+ * ring.comsume(handler);
+ * </pre>
+ * 
+ * 事件被归还之后就会被复用，处理逻辑不能在返回之后继续持有事件，
+ * 也不能和异步分发(如{@link ParallelDispatcher})一起使用
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-24  09:50
+ *
+ */
+public final class EventPool<T extends Clearable> {
+
+    private final Stripe<T>[] stripes;
+
+    private final int mask;
+
+    private final Supplier<? extends T> factory;
+
+    //池中取不到而新建的次数
+    private final LongAdder created = new LongAdder();
+
+    //池满丢弃的次数
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param stripes 条带数，会向上取整到2的幂，一般取生产者线程数
+     * @param capacity 每个条带的容量
+     * @param factory 池中没有可用对象时用来新建
+     */
+    @SuppressWarnings("unchecked")
+    public EventPool(int stripes, int capacity, Supplier<? extends T> factory) {
+        if (stripes <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Stripes and capacity must be positive. But got [" + stripes + ", " + capacity
+                            + "]");
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe<>(capacity);
+        }
+        this.mask = size - 1;
+        this.factory = Objects.requireNonNull(factory, "factory");
+    }
+
+    public T acquire() {
+        int start = (int) Thread.currentThread().getId();
+        for (int i = 0; i <= mask; i++) {
+            T t = stripes[(start + i) & mask].poll();
+            if (t != null) {
+                return t;
+            }
+        }
+        created.increment();
+        return factory.get();
+    }
+
+    /**
+     * 清理事件并归还
+     */
+    public void release(T t) {
+        t.clear();
+        if (!stripes[ThreadLocalRandom.current().nextInt() & mask].offer(t)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 包装处理逻辑，处理完成后归还事件，处理逻辑抛出异常时同样归还
+     * 
+     * 返回的对象可以一直复用
+     */
+    public Consumer<T> recycling(Consumer<? super T> handler) {
+        Objects.requireNonNull(handler, "handler");
+        return t -> {
+            try {
+                handler.accept(t);
+            } finally {
+                release(t);
+            }
+        };
+    }
+
+    public long createdCount() {
+        return created.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    private static final class Stripe<T> {
+
+        final AtomicReferenceArray<T> slots;
+
+        //池中对象的个数，存取成功之后才更新，只用来跳过空的和满的条带
+        final AtomicInteger size = new AtomicInteger();
+
+        Stripe(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        T poll() {
+            if (size.get() <= 0) {
+                return null;
+            }
+            for (int i = 0; i < slots.length(); i++) {
+                T t = slots.get(i);
+                if (t != null && slots.compareAndSet(i, t, null)) {
+                    size.decrementAndGet();
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        boolean offer(T t) {
+            if (size.get() >= slots.length()) {
+                return false;
+            }
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.get(i) == null && slots.compareAndSet(i, null, t)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
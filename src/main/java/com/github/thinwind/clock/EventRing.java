@@ -13,16 +13,21 @@
  */
 package com.github.thinwind.clock;
 
-import java.util.BitSet;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
-import com.github.thinwind.lang.BitUtil;
 
 /**
  *
  * 事件环
  * 
  * 仅支持单线程消费者
+ * 
+ * 指定了tick时长的事件环可以按截止时间调度事件，tick t 的到期时间是 origin + t * tickNanos，
+ * origin是创建事件环的时间。用{@link #driver(Consumer)}创建的驱动器按这个时间推进事件环。
  *
  * @author Shang Yehua <niceshang@outlook.com>
  * @since 2022-06-04  09:38
@@ -30,84 +35,1090 @@ import com.github.thinwind.lang.BitUtil;
  */
 public final class EventRing<T> {
 
-    //存储数据环的大小
-    private final int ringSize;
-    //环上每个槽位的容量
-    // private final int slotSize;
+    //advanceTo每批交给处理器的最大事件数
+    static final int MAX_BATCH = 1024;
 
-    private final EventSlot<T>[] slots;
+    private final SlotSequencer sequencer;
 
-    private final BitSet posSet;
+    //槽位中存放的是事件本身或者EventHandle
+    private final EventSlot<Object>[] slots;
 
-    private final AtomicInteger[] posBusyCounter;
+    //尚未到期也未被取消的事件数
+    private final LongAdder pendingCount = new LongAdder();
 
-    private int cursor = 0;
+    //已取消但还占用槽位的事件数
+    private final LongAdder cancelledCount = new LongAdder();
+
+    private final Drainer drainer = new Drainer();
+
+    private final Batcher batcher = new Batcher();
+
+    //有事件的槽位，消费者据此跳过空槽位
+    private final OccupancyMap occupancy;
+
+    //按本环推进的驱动器，可以为null
+    private volatile TickDriver driver;
+
+    //驱动线程计划醒来的tick，生产者放入更早的事件时唤醒它
+    private volatile long wakeTick = Long.MAX_VALUE;
+
+    //按键合并的事件，所有对索引和条目的访问都在索引上加锁
+    private final LongKeyIndex<Keyed> keyed = new LongKeyIndex<>(16);
+
+    //可以为null
+    private final RingMetrics metrics;
+
+    private final OverflowPolicy overflow;
+
+    //每个tick的时长，为0时不支持按时间调度
+    private final long tickNanos;
+
+    //第0个tick的时间
+    private final long originNanos;
 
-    @SuppressWarnings("all")
     public EventRing(int ringSize, int slotSize) {
-        if (!BitUtil.powerOf2(ringSize)) {
+        this(ringSize, slotSize, new YieldingWaitStrategy());
+    }
+
+    public EventRing(int ringSize, int slotSize, WaitStrategy waitStrategy) {
+        this(ringSize, slotSize, waitStrategy, null);
+    }
+
+    /**
+     * @param metrics 运行指标，为null时不统计
+     */
+    public EventRing(int ringSize, int slotSize, WaitStrategy waitStrategy, RingMetrics metrics) {
+        this(ringSize, slotSize, waitStrategy, metrics, new SpillOverflowPolicy());
+    }
+
+    /**
+     * @param overflow 槽位已满时的处理策略，不能和其他事件环共用
+     */
+    public EventRing(int ringSize, int slotSize, WaitStrategy waitStrategy, RingMetrics metrics,
+            OverflowPolicy overflow) {
+        this(ringSize, slotSize, waitStrategy, metrics, overflow, 0);
+    }
+
+    /**
+     * 创建一个可以按截止时间调度的事件环
+     * 
+     * @param tickDuration 每个tick的时长
+     */
+    public EventRing(int ringSize, int slotSize, long tickDuration, TimeUnit unit) {
+        this(ringSize, slotSize, tickDuration, unit, new YieldingWaitStrategy(), null);
+    }
+
+    public EventRing(int ringSize, int slotSize, long tickDuration, TimeUnit unit,
+            WaitStrategy waitStrategy, RingMetrics metrics) {
+        this(ringSize, slotSize, tickDuration, unit, waitStrategy, metrics,
+                new SpillOverflowPolicy());
+    }
+
+    public EventRing(int ringSize, int slotSize, long tickDuration, TimeUnit unit,
+            WaitStrategy waitStrategy, RingMetrics metrics, OverflowPolicy overflow) {
+        this(ringSize, slotSize, waitStrategy, metrics, overflow, unit.toNanos(tickDuration));
+        if (tickNanos <= 0) {
             throw new IllegalArgumentException(
-                    "Ring size must be a power of 2. But got [" + ringSize + "]");
+                    "Tick duration must be positive. But got [" + tickDuration + " " + unit + "]");
         }
-        this.ringSize = ringSize;
-        slots = new EventSlot[slotSize];
-        posSet = new BitSet(ringSize);
-        posBusyCounter = new AtomicInteger[ringSize];
     }
 
+    @SuppressWarnings("all")
+    private EventRing(int ringSize, int slotSize, WaitStrategy waitStrategy, RingMetrics metrics,
+            OverflowPolicy overflow, long tickNanos) {
+        this.metrics = metrics;
+        this.overflow = Objects.requireNonNull(overflow, "overflow");
+        this.tickNanos = tickNanos;
+        this.originNanos = System.nanoTime();
+        sequencer = new SlotSequencer(ringSize, waitStrategy, metrics);
+        occupancy = new OccupancyMap(ringSize);
+        slots = new EventSlot[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new EventSlot<>(slotSize);
+        }
+    }
+
+    /**
+     * 放入一个事件
+     * 
+     * @param pos 相对当前位置的偏移量，事件会在之后第pos次消费时被处理
+     *            0 会被当作 1 处理，必须小于环的大小。
+     *            绑定了驱动器时从时钟的当前tick算起，见{@link #relativeTick(int)}
+     * @param t 事件，不能是{@link EventHandle}
+     * @throws IllegalStateException 槽位已满且溢出策略放弃写入，又没有处理被拒绝事件的回调
+     */
     public void put(int pos, T t) {
-        if (pos == 0) {
-            pos = 1;
+        put(pos, t, false);
+    }
+
+    /**
+     * 放入一个事件，槽位已满且溢出策略放弃写入时返回false，不抛出异常
+     * 
+     * @param pos 相对当前位置的偏移量
+     * @return 事件是否已经放入
+     * @see OverflowPolicy
+     */
+    public boolean tryPut(int pos, T t) {
+        checkEvent(t);
+        if (storeAt(relativeTick(pos), t) < 0) {
+            overflow.reject(t);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 放入一个可以取消的事件
+     * 
+     * 与{@link #put(int, Object)}相同，额外分配一个句柄
+     * 
+     * @param pos 相对当前位置的偏移量
+     * @param t 事件
+     * @return 可以用来取消事件的句柄，事件被拒绝并交给回调时返回null
+     */
+    public EventHandle<T> putCancellable(int pos, T t) {
+        return put(pos, t, true);
+    }
+
+    /**
+     * 批量放入事件，整批只标记一次槽位忙，只认领一次槽位空间
+     * 
+     * @param pos 相对当前位置的偏移量
+     * @param events 事件
+     */
+    public void putAll(int pos, T[] events) {
+        putAll(pos, events, 0, events.length);
+    }
+
+    public void putAll(int pos, Collection<? extends T> events) {
+        Object[] array = events.toArray();
+        putAll(pos, array, 0, array.length);
+    }
+
+    /**
+     * 创建一个批量放入事件的构建器
+     */
+    public EventBatch<T> batch() {
+        return new EventBatch<>(this);
+    }
+
+    void putAll(int pos, Object[] events, int from, int length) {
+        if (length == 0) {
+            return;
+        }
+        for (int i = from; i < from + length; i++) {
+            checkEvent(events[i]);
+        }
+        long target = relativeTick(pos);
+        if (target > sequencer.cursor() + sequencer.ringSize() - 1) {
+            //驱动器空闲时目标可能超出环的范围，逐个放到环的最远处
+            for (int i = from; i < from + length; i++) {
+                if (storeAt(target, events[i]) < 0) {
+                    reject(events[i]);
+                }
+            }
+            return;
+        }
+        if (storeAll(sequencer.claimTick(target), events, from, length) < 0) {
+            for (int i = from; i < from + length; i++) {
+                reject(events[i]);
+            }
+        }
+    }
+
+    private EventHandle<T> put(int pos, T t, boolean cancellable) {
+        checkEvent(t);
+        EventHandle<T> handle = cancellable ? new EventHandle<>(this, t) : null;
+        if (storeAt(relativeTick(pos), cancellable ? handle : t) < 0) {
+            reject(t);
+            return null;
+        }
+        return handle;
+    }
+
+    /**
+     * 相对偏移量对应的目标tick
+     * 
+     * 驱动器空闲时直接睡到下一个有事件的tick，期间cursor不前进，可能落后于时钟接近一圈。
+     * 绑定了驱动器时从cursor和时钟当前tick中较晚的一个算起，否则偏移量会被空闲的时间抵消
+     * 
+     * @param pos 0 会被当作 1 处理，必须小于环的大小
+     */
+    private long relativeTick(int pos) {
+        if (pos < 0 || pos >= sequencer.ringSize()) {
+            throw new IllegalArgumentException("Position must be in [0, " + sequencer.ringSize()
+                    + "). But got [" + pos + "]");
+        }
+        long base = sequencer.cursor();
+        if (driver != null) {
+            base = Math.max(base, (System.nanoTime() - originNanos) / tickNanos);
+        }
+        return base + Math.max(pos, 1);
+    }
+
+    /**
+     * 写入已经标记忙的tick，槽位已满时按溢出策略处理，完成后释放忙标记
+     * 
+     * @param entry 事件本身或者句柄，句柄的tick会被更新为实际写入的tick
+     * @return 实际写入的tick，放弃写入时返回-1
+     */
+    private long store(long tick, Object entry) {
+        while (true) {
+            EventSlot<Object> slot = slots[sequencer.index(tick)];
+            if (entry instanceof EventHandle) {
+                ((EventHandle<?>) entry).tick = tick;
+            } else if (entry instanceof RecurringHandle) {
+                ((RecurringHandle<?>) entry).tick = tick;
+            }
+            int pos;
+            try {
+                pos = slot.tryAdd(entry, overflow.capacity());
+            } catch (RuntimeException e) {
+                sequencer.release(tick);
+                throw e;
+            }
+            if (pos >= 0) {
+                added(tick, slot, pos, 1);
+                sequencer.release(tick);
+                return tick;
+            }
+            tick = overflow.overflow(sequencer, slot, tick);
+            if (tick < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 整批写入已经标记忙的tick，见{@link #store(long, Object)}
+     */
+    private long storeAll(long tick, Object[] events, int from, int length) {
+        while (true) {
+            EventSlot<Object> slot = slots[sequencer.index(tick)];
+            int pos;
+            try {
+                pos = slot.tryAddAll(events, from, length, overflow.capacity());
+            } catch (RuntimeException e) {
+                sequencer.release(tick);
+                throw e;
+            }
+            if (pos >= 0) {
+                added(tick, slot, pos, length);
+                sequencer.release(tick);
+                return tick;
+            }
+            tick = overflow.overflow(sequencer, slot, tick);
+            if (tick < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 消费者线程自己放回事件时不受溢出策略的上限限制，否则可能阻塞消费者
+     */
+    private void addUnbounded(long tick, Object entry) {
+        EventSlot<Object> slot = slots[sequencer.index(tick)];
+        int pos = slot.tryAdd(entry, Integer.MAX_VALUE);
+        occupancy.set(sequencer.index(tick));
+        pendingCount.increment();
+        if (pos >= slot.initialCapacity()) {
+            overflow.spilled(1);
+        }
+    }
+
+    private void added(long tick, EventSlot<Object> slot, int pos, int count) {
+        occupied(tick);
+        pendingCount.add(count);
+        int spilled = pos + count - slot.initialCapacity();
+        if (spilled > 0) {
+            overflow.spilled(Math.min(spilled, count));
+        }
+        if (metrics != null) {
+            metrics.recordPut(count);
+        }
+    }
+
+    /**
+     * 生产者写入之后标记槽位占用，必要时唤醒驱动线程
+     */
+    private void occupied(long tick) {
+        occupancy.set(sequencer.index(tick));
+        //先置位再读wakeTick，和驱动线程先写wakeTick再扫描位图配对，二者至少有一方能看到对方
+        TickDriver d = driver;
+        if (d != null && tick < wakeTick) {
+            d.wakeup();
+        }
+    }
+
+    /**
+     * 交给溢出策略处理被拒绝的事件，策略没有回调时抛出异常
+     */
+    private void reject(Object event) {
+        if (!overflow.reject(event)) {
+            throw new IllegalStateException("Slot is full, event is rejected.");
+        }
+    }
+
+    /**
+     * 按截止时间放入一个事件，向上取整，不会早于截止时间触发
+     * 
+     * @param deadlineNanos 以{@link System#nanoTime()}为基准的截止时间
+     * @return 事件所在的tick
+     * @see #schedule(Object, long, TickRounding)
+     */
+    public long schedule(T t, long deadlineNanos) {
+        return schedule(t, deadlineNanos, TickRounding.UP);
+    }
+
+    /**
+     * 按截止时间放入一个事件
+     * 
+     * 截止时间已经过去，或者取整后的tick已经被消费时，事件放入下一个待消费的tick。
+     * 换算和占位是对同一个cursor做的，不会因为消费者同时前进而多等一个tick。
+     * 消费者落后于时钟时，超出环范围的事件先放在环的最远处，消费者到达时再移到目标tick
+     * 
+     * @param deadlineNanos 以{@link System#nanoTime()}为基准的截止时间，
+     *                      取整后的tick与当前时间的距离必须小于环的大小
+     * @param rounding 截止时间落在两个tick之间时的取整方式
+     * @return 事件所在的tick，事件被拒绝并交给回调时返回-1
+     */
+    public long schedule(T t, long deadlineNanos, TickRounding rounding) {
+        if (tickNanos == 0) {
+            throw new IllegalStateException("Tick duration is not set for this ring.");
+        }
+        long target = rounding.toTicks(deadlineNanos - originNanos, tickNanos);
+        long now = Math.max(sequencer.cursor(), (System.nanoTime() - originNanos) / tickNanos);
+        if (target - now >= sequencer.ringSize()) {
+            throw new IllegalArgumentException(
+                    "Tick [" + target + "] is out of ring range, current tick is [" + now + "]");
+        }
+        return scheduleAt(target, t);
+    }
+
+    private long scheduleAt(long target, T t) {
+        checkEvent(t);
+        long tick = storeAt(target, t);
+        if (tick < 0) {
+            reject(t);
+        }
+        return tick;
+    }
+
+    /**
+     * 在绝对tick上放入事件
+     * 
+     * tick超出环的范围时(消费者落后于时钟)先放在环的最远处，消费者到达时再移到目标tick，不会提前触发
+     * 
+     * @return 事件所在的tick，被拒绝时返回-1
+     */
+    private long storeAt(long target, Object entry) {
+        long limit = sequencer.cursor() + sequencer.ringSize() - 1;
+        if (target <= limit) {
+            return store(sequencer.claimTick(target), entry);
+        }
+        if (entry instanceof EventHandle) {
+            ((EventHandle<?>) entry).tick = target;
+        } else if (entry instanceof RecurringHandle) {
+            ((RecurringHandle<?>) entry).tick = target;
+        }
+        return store(sequencer.claimTick(limit), new Deferred(target, entry)) < 0 ? -1 : target;
+    }
+
+    /**
+     * 在一段时间之后触发事件，向上取整
+     * 
+     * @return 事件所在的tick
+     */
+    public long schedule(T t, long delay, TimeUnit unit) {
+        return schedule(t, delay, unit, TickRounding.UP);
+    }
+
+    public long schedule(T t, long delay, TimeUnit unit, TickRounding rounding) {
+        if (tickNanos == 0) {
+            throw new IllegalStateException("Tick duration is not set for this ring.");
+        }
+        long delayNanos = unit.toNanos(delay);
+        //先按环的跨度检查，避免加上当前时间后溢出
+        if (delayNanos / tickNanos >= sequencer.ringSize()) {
+            throw new IllegalArgumentException(
+                    "Delay [" + delay + " " + unit + "] exceeds the span of the ring.");
+        }
+        return scheduleAt(rounding.toTicks(System.nanoTime() + delayNanos - originNanos, tickNanos),
+                t);
+    }
+
+    /**
+     * 按固定频率重复触发事件，事件对象在每个周期复用
+     * 
+     * @param initialDelay 首次触发相对当前位置的偏移量，同{@link #put(int, Object)}
+     * @param period 周期的tick数，范围是[1, 环的大小]
+     * @return 可以用来取消后续触发的句柄，首次放入被拒绝并交给回调时返回null
+     */
+    public RecurringHandle<T> scheduleAtFixedRate(T t, int initialDelay, int period) {
+        return scheduleRecurring(t, initialDelay, period, true);
+    }
+
+    /**
+     * 按固定延迟重复触发事件，下次触发从本次触发的tick算起
+     * 
+     * @param initialDelay 首次触发相对当前位置的偏移量
+     * @param delay 两次触发之间的tick数，范围是[1, 环的大小]
+     */
+    public RecurringHandle<T> scheduleWithFixedDelay(T t, int initialDelay, int delay) {
+        return scheduleRecurring(t, initialDelay, delay, false);
+    }
+
+    /**
+     * 按固定频率重复触发事件，只适用于指定了tick时长的事件环
+     * 
+     * 周期不是tick时长的整数倍时，按累计的计划时间向上取整，误差不会累积
+     * 
+     * @param period 周期，不能短于一个tick，也不能超过环的跨度
+     */
+    public RecurringHandle<T> scheduleAtFixedRate(T t, long initialDelay, long period,
+            TimeUnit unit) {
+        return scheduleRecurring(t, unit.toNanos(initialDelay), unit.toNanos(period), true);
+    }
+
+    /**
+     * 按固定延迟重复触发事件，下次触发从本次处理完成的时间算起
+     */
+    public RecurringHandle<T> scheduleWithFixedDelay(T t, long initialDelay, long delay,
+            TimeUnit unit) {
+        return scheduleRecurring(t, unit.toNanos(initialDelay), unit.toNanos(delay), false);
+    }
+
+    private RecurringHandle<T> scheduleRecurring(T t, int initialDelay, int period,
+            boolean fixedRate) {
+        checkEvent(t);
+        if (period < 1 || period > sequencer.ringSize()) {
+            throw new IllegalArgumentException("Period must be in [1, " + sequencer.ringSize()
+                    + "]. But got [" + period + "]");
+        }
+        long unit = tickNanos == 0 ? 1 : tickNanos;
+        RecurringHandle<T> handle = new RecurringHandle<>(this, t, fixedRate, period * unit, 0);
+        long tick = relativeTick(initialDelay);
+        handle.next = tick * unit;
+        return storeAt(tick, handle) < 0 ? rejectRecurring(handle) : handle;
+    }
+
+    private RecurringHandle<T> scheduleRecurring(T t, long initialNanos, long periodNanos,
+            boolean fixedRate) {
+        if (tickNanos == 0) {
+            throw new IllegalStateException("Tick duration is not set for this ring.");
+        }
+        checkEvent(t);
+        if (periodNanos < tickNanos || (periodNanos - 1) / tickNanos >= sequencer.ringSize()) {
+            throw new IllegalArgumentException(
+                    "Period must be between one tick and the span of the ring. But got ["
+                            + periodNanos + "ns]");
+        }
+        long next = System.nanoTime() - originNanos + initialNanos;
+        RecurringHandle<T> handle = new RecurringHandle<>(this, t, fixedRate, periodNanos, next);
+        return storeAt(toTick(next), handle) < 0 ? rejectRecurring(handle) : handle;
+    }
+
+    private RecurringHandle<T> rejectRecurring(RecurringHandle<T> handle) {
+        reject(handle.event());
+        return null;
+    }
+
+    /**
+     * 周期事件的计划时间对应的tick
+     */
+    private long toTick(long time) {
+        return tickNanos == 0 ? time : TickRounding.UP.toTicks(time, tickNanos);
+    }
+
+    private static void checkEvent(Object t) {
+        if (t instanceof EventHandle || t instanceof RecurringHandle) {
+            throw new IllegalArgumentException("Handles can not be used as events.");
+        }
+    }
+
+    /**
+     * 创建一个按本环的时间基准推进的驱动器
+     * 
+     * 驱动器的第n个tick会把事件环消费到tick n，启动前或停顿中被耽误的tick在一次回调中补齐。
+     * 驱动器空闲时直接睡到下一个有事件的tick，最多睡一圈；放入更早的事件时会被唤醒
+     * 
+     * @param consumer 到期事件的处理器，在驱动线程中执行
+     */
+    public TickDriver driver(Consumer<T> consumer) {
+        if (tickNanos == 0) {
+            throw new IllegalStateException("Tick duration is not set for this ring.");
+        }
+        BatchConsumer<T> batch = events -> {
+            for (int i = 0; i < events.size(); i++) {
+                consumer.accept(events.get(i));
+            }
+        };
+        TickDriver created = new TickDriver(tickNanos, originNanos,
+                tick -> advanceTo(tick, batch), "legendary-clock-tick", this::nextDue);
+        driver = created;
+        return created;
+    }
+
+    /**
+     * 驱动线程下一次需要醒来的tick
+     */
+    private long nextDue(long current) {
+        long target = nextOccupied(current);
+        wakeTick = target;
+        //发布之后再扫描一次，发布之前置位的生产者不会唤醒驱动线程
+        long again = nextOccupied(current);
+        if (again < target) {
+            target = again;
+            wakeTick = target;
+        }
+        return target;
+    }
+
+    /**
+     * 当前位置之后第一个有事件的tick，没有时返回一圈之后的tick，结果至少是current+1
+     */
+    long nextOccupied(long current) {
+        long cursor = sequencer.cursor();
+        int window = sequencer.ringSize() - 1;
+        int from = sequencer.index(cursor + 1);
+        int index = occupancy.next(from, window);
+        long tick = index < 0 ? cursor + window : cursor + 1 + ((index - from) & window);
+        return Math.max(tick, current + 1);
+    }
+
+    /**
+     * tick的到期时间，以{@link System#nanoTime()}为基准
+     */
+    public long tickDeadline(long tick) {
+        if (tickNanos == 0) {
+            throw new IllegalStateException("Tick duration is not set for this ring.");
+        }
+        return originNanos + tick * tickNanos;
+    }
+
+    /**
+     * 每个tick的时长，没有指定时为0
+     */
+    public long tickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * 按键放入事件，同一个键只保留最后一次放入的事件和时间
+     * 
+     * 推迟已有的键只修改条目，不写槽位，消费者到达原来的位置时再把条目移到新的tick；
+     * 提前时在新的tick写入一份，原来那一份被消费时丢弃。
+     * 反复推迟的超时只占用一个位置，内存与键的个数成正比，与重新放入的次数无关。
+     * 按键放入的事件不受溢出策略的上限限制
+     * 
+     * @param key 键
+     * @param pos 相对当前位置的偏移量，同{@link #put(int, Object)}
+     * @return 事件所在的tick
+     */
+    public long putKeyed(long key, int pos, T t) {
+        long tick = relativeTick(pos);
+        checkEvent(t);
+        synchronized (keyed) {
+            return placeKeyed(key, tick, t);
+        }
+    }
+
+    /**
+     * 按键在一段时间之后触发事件，向上取整，见{@link #putKeyed(long, int, Object)}
+     * 
+     * @return 事件所在的tick
+     */
+    public long scheduleKeyed(long key, T t, long delay, TimeUnit unit) {
+        if (tickNanos == 0) {
+            throw new IllegalStateException("Tick duration is not set for this ring.");
+        }
+        checkEvent(t);
+        long delayNanos = unit.toNanos(delay);
+        if (delayNanos / tickNanos >= sequencer.ringSize()) {
+            throw new IllegalArgumentException(
+                    "Delay [" + delay + " " + unit + "] exceeds the span of the ring.");
+        }
+        long tick = TickRounding.UP.toTicks(System.nanoTime() + delayNanos - originNanos,
+                tickNanos);
+        synchronized (keyed) {
+            return placeKeyed(key, tick, t);
+        }
+    }
+
+    /**
+     * 取消键对应的事件
+     * 
+     * @return 键不存在或者事件已经触发时返回false
+     */
+    public boolean cancelKey(long key) {
+        synchronized (keyed) {
+            Keyed entry = keyed.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            entry.cancelled = true;
+            entry.event = null;
+        }
+        onCancelled();
+        return true;
+    }
+
+    /**
+     * 尚未触发的键的个数
+     */
+    public int keyedCount() {
+        synchronized (keyed) {
+            return keyed.size();
+        }
+    }
+
+    /**
+     * 调用方持有keyed的锁
+     */
+    private long placeKeyed(long key, long tick, T t) {
+        Keyed entry = keyed.get(key);
+        if (entry != null && tick >= entry.placed) {
+            //原来的位置不晚于新的tick，消费者到达时会移动条目
+            entry.event = t;
+            entry.target = tick;
+            return tick;
+        }
+        //消费者落后于时钟时先放在环的最远处，到达时再移到目标tick
+        long placed = sequencer.claimTick(
+                Math.min(tick, sequencer.cursor() + sequencer.ringSize() - 1));
+        try {
+            if (entry == null) {
+                entry = new Keyed(key);
+                keyed.put(key, entry);
+                pendingCount.increment();
+                if (metrics != null) {
+                    metrics.recordPut(1);
+                }
+            }
+            entry.event = t;
+            entry.target = Math.max(tick, placed);
+            entry.placed = placed;
+            slots[sequencer.index(placed)].add(entry);
+            occupied(placed);
+        } finally {
+            sequencer.release(placed);
+        }
+        return entry.target;
+    }
+
+    /**
+     * 在指定的绝对tick上放入一个事件
+     * 
+     * @param tick 绝对tick，与cursor的距离最大可以等于环的大小，见{@link SlotSequencer#claimAt(long)}
+     * @param t 事件
+     * @return 如果该tick已经被消费过，返回false，事件不会被放入
+     */
+    boolean offer(long tick, T t) {
+        tick = sequencer.claimAt(tick);
+        if (tick < 0) {
+            return false;
         }
-        int index = -1;
         try {
-            index = makeBusy(pos);
-            slots[index].add(t);
+            addUnbounded(tick, t);
         } finally {
-            free(index);
+            sequencer.release(tick);
         }
+        return true;
     }
 
-    private void free(int index) {
-        if (index < 0) {
+    /**
+     * 尚未到期也未被取消的事件数
+     */
+    public long pendingCount() {
+        return pendingCount.sum();
+    }
+
+    /**
+     * 已经取消但还没有被消费者清理的事件数
+     */
+    public long cancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    void onCancelled() {
+        pendingCount.decrement();
+        cancelledCount.increment();
+    }
+
+    /**
+     * 最近一次被消费的tick
+     */
+    public long cursor() {
+        return sequencer.cursor();
+    }
+
+    int ringSize() {
+        return sequencer.ringSize();
+    }
+
+    public void comsume(Consumer<T> consumer) {
+        int index = sequencer.next();
+        //等待写入完成之后再清除，之后的置位都属于下一圈
+        if (!occupancy.clear(index) && metrics == null) {
             return;
         }
-        if (posBusyCounter[index].decrementAndGet() <= 0) {
-            posSet.clear(index);
+        drainer.target = consumer;
+        try {
+            drain(index);
+        } finally {
+            drainer.finish();
         }
     }
 
-    private int makeBusy(int pos) {
-        int index = (cursor + pos) & (ringSize - 1);
-        do {
-            AtomicInteger counter = posBusyCounter[index];
-            if (counter.getAndIncrement() == 1) {
-                posSet.set(index);
-            }
-            if (index <= cursor) {
-                if (counter.decrementAndGet() <= 0) {
-                    posSet.clear(index);
+    /**
+     * 把事件环推进到targetTick，用于长时间停顿之后追赶
+     * 
+     * 和逐个tick调用{@link #comsume(Consumer)}相比，只有一次调用和一个批量处理器：
+     * cursor仍然逐个tick推进以保证生产者只写入还没有到达的tick，
+     * 但没有事件的槽位只检查占用位图，不做其他工作，
+     * 到期事件按tick顺序攒成批交给consumer，每批最多{@value #MAX_BATCH}个。
+     * 只能由消费者线程调用
+     * 
+     * @param targetTick 推进到的tick，不超过当前位置时什么都不做
+     * @param consumer 到期事件的批量处理器
+     * @return 推进之前落后的tick数
+     */
+    public long advanceTo(long targetTick, BatchConsumer<T> consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        long behind = targetTick - sequencer.cursor();
+        if (behind <= 0) {
+            return 0;
+        }
+        batcher.target = consumer;
+        drainer.target = batcher;
+        try {
+            while (sequencer.cursor() < targetTick) {
+                int index = sequencer.next();
+                if (!occupancy.clear(index)) {
+                    continue;
                 }
-                index++;
-            } else {
-                return index;
+                drain(index);
+                //与comsume一样每个槽位之后放回周期事件和推迟的键，它们只会落在之后的tick
+                drainer.settle();
             }
-        } while (true);
+            batcher.flush();
+        } finally {
+            batcher.clear();
+            drainer.finish();
+        }
+        return behind;
     }
 
-    public void comsume(Consumer<T> consumer) {
-        EventSlot<T> current = getCurSlot();
+    private void drain(int index) {
+        EventSlot<Object> slot = slots[index];
+        if (metrics == null) {
+            try {
+                slot.consume(drainer);
+            } finally {
+                restore(index, slot);
+            }
+            return;
+        }
+        int size = slot.size();
+        int delivered = drainer.delivered;
+        long start = System.nanoTime();
         try {
-            current.consume(consumer);
+            slot.consume(drainer);
         } finally {
-            cursor++;
+            metrics.recordDrain(index, size, drainer.delivered - delivered,
+                    System.nanoTime() - start);
+            restore(index, slot);
+        }
+    }
+
+    /**
+     * 消费中途抛出异常时槽位中还有剩余的事件，恢复占用标记
+     */
+    private void restore(int index, EventSlot<Object> slot) {
+        if (slot.size() > 0) {
+            occupancy.set(index);
+        }
+    }
+
+    /**
+     * 每个槽位当前的事件数，包括已取消但尚未清理的事件
+     */
+    public int[] occupancy() {
+        int[] occupancy = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            occupancy[i] = slots[i].size();
         }
+        return occupancy;
     }
 
-    private EventSlot<T> getCurSlot() {
-        while (posSet.get(cursor)) {
-            Thread.yield();
+    /**
+     * 消费槽位时跳过已取消的事件，只由消费者线程使用，避免每次消费都分配对象
+     * 
+     * 周期事件先记下来，整个槽位消费完再放回环中，避免周期等于环大小时又放回正在消费的槽位
+     */
+    private final class Drainer implements Consumer<Object> {
+
+        Consumer<T> target;
+
+        final ArrayList<RecurringHandle<T>> recurring = new ArrayList<>();
+
+        //需要移到新tick的键
+        final ArrayList<Keyed> moved = new ArrayList<>();
+
+        //还没有到期的超出环范围的事件
+        final ArrayList<Deferred> deferred = new ArrayList<>();
+
+        int delivered;
+
+        int skipped;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void accept(Object o) {
+            if (o instanceof EventHandle) {
+                EventHandle<T> handle = (EventHandle<T>) o;
+                if (!handle.expire()) {
+                    skipped++;
+                    return;
+                }
+                delivered++;
+                target.accept(handle.event());
+            } else if (o instanceof RecurringHandle) {
+                fire((RecurringHandle<T>) o);
+            } else if (o instanceof Keyed) {
+                fire((Keyed) o);
+            } else if (o instanceof Deferred) {
+                Deferred entry = (Deferred) o;
+                if (entry.target > sequencer.cursor()) {
+                    deferred.add(entry);
+                } else {
+                    accept(entry.entry);
+                }
+            } else {
+                delivered++;
+                target.accept((T) o);
+            }
+        }
+
+        private void fire(RecurringHandle<T> handle) {
+            long current = sequencer.cursor();
+            long now = tickNanos == 0 ? current : System.nanoTime() - originNanos;
+            if (!handle.fire(now - handle.next)) {
+                skipped++;
+                return;
+            }
+            delivered++;
+            boolean done = false;
+            try {
+                target.accept(handle.event());
+                done = true;
+            } finally {
+                if (done) {
+                    if (handle.fixedRate) {
+                        handle.next += handle.period;
+                    } else {
+                        handle.next = (tickNanos == 0 ? current : System.nanoTime() - originNanos)
+                                + handle.period;
+                    }
+                    recurring.add(handle);
+                } else {
+                    handle.fail();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void fire(Keyed entry) {
+            long current = sequencer.cursor();
+            Object event;
+            synchronized (keyed) {
+                if (entry.placed != current) {
+                    //提前之后留下的旧副本
+                    return;
+                }
+                if (entry.cancelled) {
+                    entry.placed = -1;
+                    skipped++;
+                    return;
+                }
+                if (entry.target > sequencer.cursor()) {
+                    //推迟过，还没有到期，消费完再移到新的tick
+                    moved.add(entry);
+                    return;
+                }
+                keyed.remove(entry.key);
+                event = entry.event;
+                entry.event = null;
+                entry.placed = -1;
+            }
+            delivered++;
+            target.accept((T) event);
+        }
+
+        /**
+         * 把本次触发的周期事件放回环中，落后于计划时放到下一个tick
+         */
+        private void rearm() {
+            long current = sequencer.cursor();
+            for (int i = 0; i < recurring.size(); i++) {
+                RecurringHandle<T> handle = recurring.get(i);
+                long due = Math.max(toTick(handle.next), current + 1);
+                if (!handle.rearm(due)) {
+                    continue;
+                }
+                //rearm之后被取消也要放回，计数由消费时的跳过抵消
+                long tick = sequencer.claimAt(Math.min(due, current + sequencer.ringSize()));
+                try {
+                    //消费者落后于时钟时计划时间可能超出环的范围
+                    addUnbounded(tick, tick == due ? handle : new Deferred(due, handle));
+                } finally {
+                    sequencer.release(tick);
+                }
+            }
+            recurring.clear();
+        }
+
+        /**
+         * 把推迟过的键移到新的tick，移动之前取消的不再放回
+         */
+        private void move() {
+            long current = sequencer.cursor();
+            synchronized (keyed) {
+                for (int i = 0; i < moved.size(); i++) {
+                    Keyed entry = moved.get(i);
+                    if (entry.cancelled) {
+                        entry.placed = -1;
+                        skipped++;
+                        continue;
+                    }
+                    //超出环的范围时先放在最远处，距离小于环的大小，不会写回刚刚消费的槽位
+                    long tick = sequencer.claimAt(Math.min(Math.max(entry.target, current + 1),
+                            current + sequencer.ringSize() - 1));
+                    try {
+                        entry.placed = tick;
+                        slots[sequencer.index(tick)].add(entry);
+                        occupancy.set(sequencer.index(tick));
+                    } finally {
+                        sequencer.release(tick);
+                    }
+                }
+            }
+            moved.clear();
+        }
+
+        /**
+         * 把超出环范围的事件移到目标tick，仍然超出时再放到环的最远处
+         */
+        private void forward() {
+            long current = sequencer.cursor();
+            for (int i = 0; i < deferred.size(); i++) {
+                Deferred entry = deferred.get(i);
+                long tick = Math.min(entry.target, current + sequencer.ringSize() - 1);
+                tick = sequencer.claimAt(tick);
+                try {
+                    slots[sequencer.index(tick)].add(tick == entry.target ? entry.entry : entry);
+                    occupancy.set(sequencer.index(tick));
+                } finally {
+                    sequencer.release(tick);
+                }
+            }
+            deferred.clear();
+        }
+
+        /**
+         * 放回本次触发的周期事件、推迟的键和超出环范围的事件，并更新计数
+         */
+        void settle() {
+            if (!recurring.isEmpty()) {
+                rearm();
+            }
+            if (!moved.isEmpty()) {
+                move();
+            }
+            if (!deferred.isEmpty()) {
+                forward();
+            }
+            pendingCount.add(-delivered);
+            cancelledCount.add(-skipped);
+            delivered = 0;
+            skipped = 0;
+        }
+
+        void finish() {
+            settle();
+            target = null;
+        }
+    }
+
+    /**
+     * 把逐个消费的事件攒成批，只由消费者线程使用
+     */
+    private final class Batcher implements Consumer<T> {
+
+        final ArrayList<T> events = new ArrayList<>();
+
+        BatchConsumer<T> target;
+
+        @Override
+        public void accept(T t) {
+            events.add(t);
+            if (events.size() >= MAX_BATCH) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (events.isEmpty()) {
+                return;
+            }
+            try {
+                target.accept(events);
+            } finally {
+                events.clear();
+            }
+        }
+
+        void clear() {
+            events.clear();
+            target = null;
+        }
+    }
+
+    /**
+     * 消费者落后于时钟时，放在环的最远处等待的事件
+     */
+    private static final class Deferred {
+
+        final long target;
+
+        final Object entry;
+
+        Deferred(long target, Object entry) {
+            this.target = target;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * 按键合并的事件条目，字段都在keyed的锁内访问
+     */
+    private static final class Keyed {
+
+        final long key;
+
+        Object event;
+
+        //应该触发的tick
+        long target;
+
+        //负责该条目的那一份所在的tick，其余副本被消费时丢弃
+        long placed;
+
+        boolean cancelled;
+
+        Keyed(long key) {
+            this.key = key;
         }
-        return slots[cursor];
     }
 }
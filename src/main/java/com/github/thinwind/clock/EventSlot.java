@@ -13,12 +13,19 @@
  */
 package com.github.thinwind.clock;
 
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
 
 /**
  *
- * TODO EventSlot说明
+ * 事件槽，多生产者单消费者
+ * 
+ * 存储空间按块增长，第k块的容量是 size * 2^k，已经分配的块会一直复用。
+ * 生产者通过cursor认领位置，写入后元素本身即作为可用标记(非null表示已发布)，
+ * 消费者只消费已认领的位置，遇到尚未发布的元素会等待其发布，
+ * 因此消费可以和生产并发进行。
  *
  * @author Shang Yehua <niceshang@outlook.com>
  * @since 2022-06-04  09:42
@@ -26,33 +33,203 @@ import java.util.function.Consumer;
  */
 public final class EventSlot<T> {
 
+    //int范围内最多需要的块数
+    private static final int MAX_CHUNKS = 32;
+
+    //第一块的容量
     private final int size;
 
-    private final Object[] bucket;
+    private final AtomicReferenceArray<AtomicReferenceArray<Object>> chunks =
+            new AtomicReferenceArray<>(MAX_CHUNKS);
 
+    //已被生产者认领的位置数
     private final AtomicInteger cursor = new AtomicInteger(0);
 
+    //已被消费的位置数，只由消费者修改
+    private volatile int head = 0;
+
     public EventSlot(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Slot size must be positive. But got [" + size + "]");
+        }
         this.size = size;
-        bucket = new Object[size];
+        chunks.set(0, new AtomicReferenceArray<>(size));
     }
 
     public void add(T t) {
-        int pos = cursor.getAndIncrement();
-        if (pos > size - 1) {
-            throw new IllegalStateException("EventSlot does not have any room for new element.");
+        tryAdd(t, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 未消费的元素少于limit时加入元素
+     * 
+     * @param limit 最多容纳的未消费元素数，为{@link Integer#MAX_VALUE}时等同于{@link #add(Object)}
+     * @return 认领的位置，已满时返回-1
+     */
+    public int tryAdd(T t, int limit) {
+        Objects.requireNonNull(t, "event");
+        int pos = claim(1, limit);
+        if (pos >= 0) {
+            int chunkIndex = chunkIndex(pos);
+            chunk(chunkIndex).lazySet(pos - chunkStart(chunkIndex), t);
+        }
+        return pos;
+    }
+
+    public void addAll(T[] events) {
+        addAll(events, 0, events.length);
+    }
+
+    /**
+     * 批量加入元素，整批只认领一次位置
+     * 
+     * @param events 元素数组
+     * @param from 起始下标
+     * @param length 个数
+     */
+    public void addAll(T[] events, int from, int length) {
+        tryAddAll(events, from, length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 空间足够时批量加入元素，整批只认领一次位置
+     * 
+     * 槽位为空时总是可以加入，即使整批超过了limit
+     * 
+     * @param limit 最多容纳的未消费元素数
+     * @return 认领的起始位置，空间不足时返回-1
+     */
+    public int tryAddAll(T[] events, int from, int length, int limit) {
+        if (length == 0) {
+            return cursor.get();
+        }
+        //认领之后不能再失败，否则消费者会一直等待未发布的元素
+        for (int i = from; i < from + length; i++) {
+            Objects.requireNonNull(events[i], "event");
+        }
+        int pos = claim(length, limit);
+        if (pos < 0) {
+            return -1;
+        }
+        int end = pos + length;
+        for (int p = pos; p < end;) {
+            int chunkIndex = chunkIndex(p);
+            AtomicReferenceArray<Object> chunk = chunk(chunkIndex);
+            int start = chunkStart(chunkIndex);
+            int stop = Math.min(end, start + chunk.length());
+            for (; p < stop; p++) {
+                chunk.lazySet(p - start, events[from++]);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * 认领count个位置
+     * 
+     * 不限制容量时直接累加；否则用CAS认领，失败的认领不会让消费者看到
+     */
+    private int claim(int count, int limit) {
+        if (limit == Integer.MAX_VALUE) {
+            int pos = cursor.getAndAdd(count);
+            if (pos < 0 || pos + count < 0) {
+                cursor.getAndAdd(-count);
+                throw new IllegalStateException("EventSlot does not have any room for new element.");
+            }
+            return pos;
+        }
+        while (true) {
+            int pos = cursor.get();
+            int size = pos - head;
+            if (size > 0 && size + count > limit) {
+                return -1;
+            }
+            if (pos + count < 0) {
+                throw new IllegalStateException("EventSlot does not have any room for new element.");
+            }
+            if (cursor.compareAndSet(pos, pos + count)) {
+                return pos;
+            }
         }
-        bucket[pos] = t;
     }
 
+    /**
+     * 消费所有已认领的元素
+     * 
+     * 如果消费期间没有新元素加入，消费完成后复位，从第一块重新开始使用
+     */
     @SuppressWarnings("all")
     public void consume(Consumer<T> consumer) {
-        try{
-            for (int i = 0; i < cursor.get(); i++) {
-                consumer.accept((T)bucket[i]);
+        int claimed = cursor.get();
+        int pos = head;
+        try {
+            while (pos < claimed) {
+                int chunkIndex = chunkIndex(pos);
+                AtomicReferenceArray<Object> chunk = chunk(chunkIndex);
+                int start = chunkStart(chunkIndex);
+                int end = Math.min(claimed, start + chunk.length());
+                while (pos < end) {
+                    int offset = pos - start;
+                    Object t;
+                    while ((t = chunk.get(offset)) == null) {
+                        //已认领但还没有发布
+                        Thread.onSpinWait();
+                    }
+                    chunk.lazySet(offset, null);
+                    //先推进位置，consumer抛出异常时不会重复消费
+                    pos++;
+                    consumer.accept((T) t);
+                }
             }
-        }finally{
-            cursor.set(0);
+        } finally {
+            //只有没有新认领时才能复位，否则从当前位置继续
+            if (pos == claimed && cursor.compareAndSet(claimed, 0)) {
+                head = 0;
+            } else {
+                head = pos;
+            }
+        }
+    }
+
+    /**
+     * 第一块的容量，之后的位置属于溢出的块
+     */
+    public int initialCapacity() {
+        return size;
+    }
+
+    /**
+     * 尚未被消费的元素个数，并发时是一个近似值
+     */
+    public int size() {
+        return Math.max(0, cursor.get() - head);
+    }
+
+    private AtomicReferenceArray<Object> chunk(int chunkIndex) {
+        AtomicReferenceArray<Object> chunk = chunks.get(chunkIndex);
+        if (chunk != null) {
+            return chunk;
         }
+        AtomicReferenceArray<Object> created =
+                new AtomicReferenceArray<>(chunkCapacity(chunkIndex));
+        if (chunks.compareAndSet(chunkIndex, null, created)) {
+            return created;
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    /**
+     * 位置pos所在的块: pos / size + 1 的最高位
+     */
+    private int chunkIndex(int pos) {
+        return 31 - Integer.numberOfLeadingZeros(pos / size + 1);
+    }
+
+    private int chunkStart(int chunkIndex) {
+        return (int) (((1L << chunkIndex) - 1) * size);
+    }
+
+    private int chunkCapacity(int chunkIndex) {
+        return (int) Math.min(Integer.MAX_VALUE, (1L << chunkIndex) * size);
     }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+/**
+ *
+ * {@link DisruptorPipeline}中预分配的事件容器
+ * 
+ * 容器会被循环复用，处理器不能在onEvent返回之后继续持有它。
+ * 所有处理器处理完之后{@link DisruptorPipeline}会清空容器
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-15  09:40
+ *
+ */
+public final class ExpiredEvent<T> {
+
+    private T event;
+
+    public T get() {
+        return event;
+    }
+
+    void set(T event) {
+        this.event = event;
+    }
+}
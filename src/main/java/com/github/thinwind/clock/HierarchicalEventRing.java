@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.function.Consumer;
+
+/**
+ *
+ * 分层事件环(分层时间轮)
+ * 
+ * 由多个大小相同的{@link EventRing}级联而成，第0层每个槽位代表1个tick，
+ * 第k层每个槽位代表第k-1层转一圈的时间。
+ * 延迟较长的事件先放在粗粒度的层上，随着时间推进逐层下落，最终在第0层被消费。
+ * 
+ * 仅支持单线程消费者
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-06  10:15
+ *
+ */
+public final class HierarchicalEventRing<T> {
+
+    //每一层环的大小
+    private final int ringSize;
+
+    //log2(ringSize)
+    private final int bits;
+
+    private final EventRing<T> lowest;
+
+    //第1层及以上，槽位里保存的是带截止tick的事件
+    private final EventRing<Pending<T>>[] uppers;
+
+    //能支持的最大延迟
+    private final long maxDelay;
+
+    public HierarchicalEventRing(int ringSize, int slotSize, int levels) {
+        this(ringSize, slotSize, levels, new YieldingWaitStrategy());
+    }
+
+    @SuppressWarnings("all")
+    public HierarchicalEventRing(int ringSize, int slotSize, int levels,
+            WaitStrategy waitStrategy) {
+        if (levels < 1) {
+            throw new IllegalArgumentException("Levels must be positive. But got [" + levels + "]");
+        }
+        lowest = new EventRing<>(ringSize, slotSize, waitStrategy);
+        this.ringSize = ringSize;
+        this.bits = Integer.numberOfTrailingZeros(ringSize);
+        if ((long) bits * levels > 62) {
+            throw new IllegalArgumentException("Too many levels for ring size [" + ringSize + "]");
+        }
+        uppers = new EventRing[levels - 1];
+        for (int i = 0; i < uppers.length; i++) {
+            uppers[i] = new EventRing<>(ringSize, slotSize, waitStrategy);
+        }
+        //最高层的偏移量必须小于环的大小
+        maxDelay = (long) (ringSize - 1) << (bits * (levels - 1));
+    }
+
+    /**
+     * 放入一个事件
+     * 
+     * @param delay 延迟的tick数，事件会在之后第delay次消费时被处理
+     *              0 会被当作 1 处理
+     * @param t 事件
+     */
+    public void put(long delay, T t) {
+        if (delay < 0 || delay > maxDelay) {
+            throw new IllegalArgumentException(
+                    "Delay must be in [0, " + maxDelay + "]. But got [" + delay + "]");
+        }
+        if (delay == 0) {
+            delay = 1;
+        }
+        if (delay < ringSize) {
+            lowest.put((int) delay, t);
+            return;
+        }
+        long deadline = lowest.cursor() + delay;
+        while (!place(deadline, t, null, lowest.cursor())) {
+            //消费者在此期间推进了时间，目标槽位已被级联，按新的时间重新放置
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 按绝对截止tick放置事件
+     * 
+     * @param pending 已经存在的包装对象，级联时复用，避免重新分配
+     * @param now 当前的tick
+     * @return 目标槽位已经被消费时返回false
+     */
+    private boolean place(long deadline, T t, Pending<T> pending, long now) {
+        for (int level = uppers.length; level > 0; level--) {
+            int shift = bits * level;
+            //低于此层的所有层都放不下，只能放在此层
+            if ((deadline >>> shift) - (now >>> shift) > 0
+                    && (deadline >>> (shift - bits)) - (now >>> (shift - bits)) >= ringSize) {
+                if (pending == null) {
+                    pending = new Pending<>(deadline, t);
+                }
+                return uppers[level - 1].offer(deadline >>> shift, pending);
+            }
+        }
+        if (deadline <= now) {
+            //已经过期，放到下一个待消费的槽位
+            lowest.put(1, t);
+            return true;
+        }
+        return lowest.offer(deadline, t);
+    }
+
+    /**
+     * 推进一个tick，并消费到期的事件
+     * 
+     * 先把到达边界的高层槽位级联到低层，再消费第0层的槽位
+     */
+    public void comsume(Consumer<T> consumer) {
+        long next = lowest.cursor() + 1;
+        for (int level = uppers.length; level > 0; level--) {
+            int shift = bits * level;
+            if ((next & ((1L << shift) - 1)) == 0) {
+                uppers[level - 1].comsume(p -> cascade(p, next, consumer));
+            }
+        }
+        lowest.comsume(consumer);
+    }
+
+    private void cascade(Pending<T> pending, long next, Consumer<T> consumer) {
+        if (pending.deadline <= next) {
+            consumer.accept(pending.event);
+            return;
+        }
+        //级联发生在next这个tick上，各层都还没有消费next之后的槽位
+        if (!place(pending.deadline, pending.event, pending, next)) {
+            throw new IllegalStateException("Cascade failed for deadline [" + pending.deadline + "]");
+        }
+    }
+
+    /**
+     * 最大支持的延迟tick数
+     */
+    public long maxDelay() {
+        return maxDelay;
+    }
+
+    static final class Pending<T> {
+
+        final long deadline;
+
+        final T event;
+
+        Pending(long deadline, T event) {
+            this.deadline = deadline;
+            this.event = event;
+        }
+    }
+}
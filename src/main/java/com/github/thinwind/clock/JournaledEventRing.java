@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ *
+ * 带日志的事件环
+ * 
+ * 所有放入、取消和消费都会记录到{@link TimerJournal}中，重启后可以恢复未到期的事件。
+ * 日志的写入在后台线程完成，这里只有编码和入队的开销
+ * 
+ * 仅支持单线程消费者
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-23  10:30
+ *
+ */
+public final class JournaledEventRing<T> {
+
+    private final EventRing<T> ring;
+
+    private final TimerJournal<T> journal;
+
+    public JournaledEventRing(EventRing<T> ring, TimerJournal<T> journal) {
+        this.ring = ring;
+        this.journal = journal;
+    }
+
+    /**
+     * 从日志中恢复事件，并启动日志写线程
+     * 
+     * @param onRecovered 每个恢复的事件的句柄
+     * @return 恢复的事件数
+     */
+    public int recover(Consumer<EventHandle<T>> onRecovered) throws IOException {
+        int recovered = journal.recover(ring, onRecovered);
+        journal.start();
+        return recovered;
+    }
+
+    /**
+     * 放入一个可以取消的事件，规则同{@link EventRing#putCancellable(int, Object)}
+     * 
+     * @return 事件被溢出策略拒绝并交给回调时返回null，不会记录日志
+     */
+    public EventHandle<T> put(int pos, T t) {
+        EventHandle<T> handle = ring.putCancellable(pos, t);
+        if (handle == null) {
+            return null;
+        }
+        journal.logPut(handle.tick(), t);
+        return handle;
+    }
+
+    public boolean cancel(EventHandle<T> handle) {
+        T event = handle.event();
+        if (!handle.cancel()) {
+            return false;
+        }
+        journal.logCancel(handle.tick(), event);
+        return true;
+    }
+
+    public void comsume(Consumer<T> consumer) {
+        ring.comsume(consumer);
+        //消费完成之后再记录，崩溃时宁可重复也不丢失
+        journal.logTick(ring.cursor());
+    }
+
+    public long pendingCount() {
+        return ring.pendingCount();
+    }
+
+    public void checkpoint() {
+        journal.checkpoint();
+    }
+
+    public void close() throws IOException {
+        journal.close();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ *
+ * long类型的事件环
+ * 
+ * 适用于事件本身就是一个id的场景，放入和消费都不需要装箱，也不需要分配对象。
+ * 规则与{@link EventRing}相同
+ * 
+ * 仅支持单线程消费者
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-17  14:00
+ *
+ */
+public final class LongEventRing {
+
+    private final SlotSequencer sequencer;
+
+    private final LongEventSlot[] slots;
+
+    private final LongAdder pendingCount = new LongAdder();
+
+    public LongEventRing(int ringSize, int slotSize) {
+        this(ringSize, slotSize, new YieldingWaitStrategy());
+    }
+
+    public LongEventRing(int ringSize, int slotSize, WaitStrategy waitStrategy) {
+        sequencer = new SlotSequencer(ringSize, waitStrategy);
+        slots = new LongEventSlot[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new LongEventSlot(slotSize);
+        }
+    }
+
+    /**
+     * 放入一个事件
+     * 
+     * @param pos 相对当前位置的偏移量，事件会在之后第pos次消费时被处理
+     *            0 会被当作 1 处理，必须小于环的大小
+     * @param value 事件
+     */
+    public void put(int pos, long value) {
+        long tick = -1;
+        try {
+            tick = sequencer.claim(pos);
+            slots[sequencer.index(tick)].add(value);
+            pendingCount.increment();
+        } finally {
+            sequencer.release(tick);
+        }
+    }
+
+    public void putAll(int pos, long[] values) {
+        putAll(pos, values, 0, values.length);
+    }
+
+    /**
+     * 批量放入事件，整批只标记一次槽位忙
+     */
+    public void putAll(int pos, long[] values, int from, int length) {
+        if (length == 0) {
+            return;
+        }
+        long tick = -1;
+        try {
+            tick = sequencer.claim(pos);
+            slots[sequencer.index(tick)].addAll(values, from, length);
+            pendingCount.add(length);
+        } finally {
+            sequencer.release(tick);
+        }
+    }
+
+    public void comsume(LongConsumer consumer) {
+        LongEventSlot slot = slots[sequencer.next()];
+        int before = slot.size();
+        try {
+            slot.consume(consumer);
+        } finally {
+            pendingCount.add(slot.size() - before);
+        }
+    }
+
+    /**
+     * 尚未到期的事件数
+     */
+    public long pendingCount() {
+        return pendingCount.sum();
+    }
+}
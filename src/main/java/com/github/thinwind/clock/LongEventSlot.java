@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongConsumer;
+
+/**
+ *
+ * long类型事件槽，多生产者单消费者
+ * 
+ * 与{@link EventSlot}相同的分块增长方式，数据存放在long[]中，不需要装箱。
+ * long没有null可以当作可用标记，因此每个位置另有一个int标记，
+ * 生产者写入数值后以release语义置1，消费者以acquire语义读到1后再读数值。
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-17  11:20
+ *
+ */
+public final class LongEventSlot {
+
+    private static final VarHandle FLAGS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final int MAX_CHUNKS = 32;
+
+    //第一块的容量
+    private final int size;
+
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    //已被生产者认领的位置数
+    private final AtomicInteger cursor = new AtomicInteger(0);
+
+    //已被消费的位置数，只由消费者修改
+    private volatile int head = 0;
+
+    public LongEventSlot(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Slot size must be positive. But got [" + size + "]");
+        }
+        this.size = size;
+        chunks.set(0, new Chunk(size));
+    }
+
+    public void add(long value) {
+        int pos = cursor.getAndIncrement();
+        if (pos < 0) {
+            cursor.getAndDecrement();
+            throw new IllegalStateException("EventSlot does not have any room for new element.");
+        }
+        int chunkIndex = chunkIndex(pos);
+        chunk(chunkIndex).publish(pos - chunkStart(chunkIndex), value);
+    }
+
+    /**
+     * 批量加入，整批只认领一次位置
+     */
+    public void addAll(long[] values, int from, int length) {
+        if (length == 0) {
+            return;
+        }
+        int pos = cursor.getAndAdd(length);
+        if (pos < 0 || pos + length < 0) {
+            cursor.getAndAdd(-length);
+            throw new IllegalStateException("EventSlot does not have any room for new element.");
+        }
+        int end = pos + length;
+        while (pos < end) {
+            int chunkIndex = chunkIndex(pos);
+            Chunk chunk = chunk(chunkIndex);
+            int start = chunkStart(chunkIndex);
+            int stop = Math.min(end, start + chunk.values.length);
+            for (; pos < stop; pos++) {
+                chunk.publish(pos - start, values[from++]);
+            }
+        }
+    }
+
+    /**
+     * 消费所有已认领的元素，规则同{@link EventSlot#consume(java.util.function.Consumer)}
+     */
+    public void consume(LongConsumer consumer) {
+        int claimed = cursor.get();
+        int pos = head;
+        try {
+            while (pos < claimed) {
+                int chunkIndex = chunkIndex(pos);
+                Chunk chunk = chunk(chunkIndex);
+                int start = chunkStart(chunkIndex);
+                int end = Math.min(claimed, start + chunk.values.length);
+                while (pos < end) {
+                    int offset = pos - start;
+                    while ((int) FLAGS.getAcquire(chunk.flags, offset) == 0) {
+                        //已认领但还没有发布
+                        Thread.onSpinWait();
+                    }
+                    long value = chunk.values[offset];
+                    FLAGS.setRelease(chunk.flags, offset, 0);
+                    pos++;
+                    consumer.accept(value);
+                }
+            }
+        } finally {
+            if (pos == claimed && cursor.compareAndSet(claimed, 0)) {
+                head = 0;
+            } else {
+                head = pos;
+            }
+        }
+    }
+
+    /**
+     * 尚未被消费的元素个数，并发时是一个近似值
+     */
+    public int size() {
+        return Math.max(0, cursor.get() - head);
+    }
+
+    private Chunk chunk(int chunkIndex) {
+        Chunk chunk = chunks.get(chunkIndex);
+        if (chunk != null) {
+            return chunk;
+        }
+        Chunk created = new Chunk((int) Math.min(Integer.MAX_VALUE, (1L << chunkIndex) * size));
+        if (chunks.compareAndSet(chunkIndex, null, created)) {
+            return created;
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private int chunkIndex(int pos) {
+        return 31 - Integer.numberOfLeadingZeros(pos / size + 1);
+    }
+
+    private int chunkStart(int chunkIndex) {
+        return (int) (((1L << chunkIndex) - 1) * size);
+    }
+
+    private static final class Chunk {
+
+        final long[] values;
+
+        final int[] flags;
+
+        Chunk(int capacity) {
+            values = new long[capacity];
+            flags = new int[capacity];
+        }
+
+        void publish(int offset, long value) {
+            values[offset] = value;
+            FLAGS.setRelease(flags, offset, 1);
+        }
+    }
+}
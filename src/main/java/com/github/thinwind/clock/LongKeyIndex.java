@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+/**
+ *
+ * long为键的开放寻址哈希表，线性探测，删除时向前回移，不留墓碑
+ * 
+ * 键不装箱，负载超过一半时扩容。不是线程安全的，由调用方加锁
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-13  10:20
+ *
+ */
+final class LongKeyIndex<V> {
+
+    private long[] keys;
+
+    //为null表示空位
+    private Object[] values;
+
+    private int mask;
+
+    private int size;
+
+    LongKeyIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        for (int i = hash(key);; i = (i + 1) & mask) {
+            Object value = values[i];
+            if (value == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    /**
+     * @return 原来的值，没有时返回null
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        int i = hash(key);
+        for (;; i = (i + 1) & mask) {
+            Object old = values[i];
+            if (old == null) {
+                break;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) >>> 1) {
+            resize();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        for (int i = hash(key);; i = (i + 1) & mask) {
+            Object value = values[i];
+            if (value == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                shiftBack(i);
+                size--;
+                return (V) value;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 把空位之后同一探测链上的元素前移，保证查找不会在空位处提前结束
+     */
+    private void shiftBack(int hole) {
+        for (int i = (hole + 1) & mask;; i = (i + 1) & mask) {
+            Object value = values[i];
+            if (value == null) {
+                break;
+            }
+            int home = hash(keys[i]);
+            //home不在(hole, i]之间时可以移到hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = value;
+                hole = i;
+            }
+        }
+        values[hole] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new Object[oldValues.length << 1];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * 槽位占用位图，每个槽位一个bit
+ * 
+ * 生产者写入槽位后置位，消费者消费前清除。消费者可以按long扫描，
+ * 一次跳过64个空槽位，找到下一个有事件的槽位
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-11  09:40
+ *
+ */
+public final class OccupancyMap {
+
+    private final int size;
+
+    private final AtomicLongArray words;
+
+    public OccupancyMap(int size) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    /**
+     * 置位，已经置位时不做写操作，避免生产者之间争用缓存行
+     */
+    void set(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long current;
+        while (((current = words.get(word)) & bit) == 0) {
+            if (words.compareAndSet(word, current, current | bit)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 清除
+     * 
+     * @return 清除之前是否置位
+     */
+    boolean clear(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long current;
+        while (((current = words.get(word)) & bit) != 0) {
+            if (words.compareAndSet(word, current, current & ~bit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isSet(int index) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * 从from开始环形查找第一个置位的槽位
+     * 
+     * @param from 起始下标
+     * @param count 最多检查的槽位数
+     * @return 槽位下标，没有时返回-1
+     */
+    public int next(int from, int count) {
+        int index = from;
+        while (count > 0) {
+            int offset = index & 63;
+            int span = Math.min(Math.min(64 - offset, count), size - index);
+            long bits = words.get(index >>> 6) >>> offset;
+            if (span < 64) {
+                bits &= (1L << span) - 1;
+            }
+            if (bits != 0) {
+                return index + Long.numberOfTrailingZeros(bits);
+            }
+            count -= span;
+            index += span;
+            if (index == size) {
+                index = 0;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import com.github.thinwind.lang.BytesRange;
+
+/**
+ *
+ * 事件存放在堆外的事件环
+ * 
+ * 放入时用{@link EventCodec}把事件编码后复制到direct内存中，消费时再解码。
+ * 等待中的事件不占用Java堆，适用于海量长时间挂起的事件。
+ * 规则与{@link EventRing}相同
+ * 
+ * 仅支持单线程消费者
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-20  14:15
+ *
+ */
+public final class OffHeapEventRing<T> {
+
+    private final SlotSequencer sequencer;
+
+    private final OffHeapEventSlot[] slots;
+
+    private final EventCodec<T> codec;
+
+    private final LongAdder pendingCount = new LongAdder();
+
+    private final Decoder decoder = new Decoder();
+
+    /**
+     * @param ringSize 环的大小
+     * @param slotBytes 每个槽位初始的堆外字节数
+     * @param codec 事件编解码
+     */
+    public OffHeapEventRing(int ringSize, int slotBytes, EventCodec<T> codec) {
+        this(ringSize, slotBytes, codec, new YieldingWaitStrategy());
+    }
+
+    public OffHeapEventRing(int ringSize, int slotBytes, EventCodec<T> codec,
+            WaitStrategy waitStrategy) {
+        this.codec = Objects.requireNonNull(codec, "codec");
+        sequencer = new SlotSequencer(ringSize, waitStrategy);
+        slots = new OffHeapEventSlot[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new OffHeapEventSlot(slotBytes);
+        }
+    }
+
+    /**
+     * 放入一个事件
+     * 
+     * @param pos 相对当前位置的偏移量，事件会在之后第pos次消费时被处理
+     *            0 会被当作 1 处理，必须小于环的大小
+     * @param t 事件
+     */
+    public void put(int pos, T t) {
+        //编码放在标记槽位忙之前，避免消费者等待
+        BytesRange bytes = codec.encode(t);
+        long tick = -1;
+        try {
+            tick = sequencer.claim(pos);
+            slots[sequencer.index(tick)].add(bytes);
+            pendingCount.increment();
+        } finally {
+            sequencer.release(tick);
+        }
+    }
+
+    public void comsume(Consumer<T> consumer) {
+        OffHeapEventSlot slot = slots[sequencer.next()];
+        decoder.target = consumer;
+        try {
+            slot.consume(decoder);
+        } finally {
+            decoder.finish();
+        }
+    }
+
+    /**
+     * 尚未到期的事件数
+     */
+    public long pendingCount() {
+        return pendingCount.sum();
+    }
+
+    private final class Decoder implements Consumer<BytesRange> {
+
+        Consumer<T> target;
+
+        int delivered;
+
+        @Override
+        public void accept(BytesRange bytes) {
+            delivered++;
+            target.accept(codec.decode(bytes));
+        }
+
+        void finish() {
+            target = null;
+            pendingCount.add(-delivered);
+            delivered = 0;
+        }
+    }
+}
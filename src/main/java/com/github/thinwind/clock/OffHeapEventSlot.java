@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import com.github.thinwind.lang.BytesRange;
+
+/**
+ *
+ * 堆外事件槽，多生产者单消费者
+ * 
+ * 事件以 [4字节头][负载] 的记录形式存放在direct ByteBuffer中，记录按4字节对齐。
+ * 头部为 负载长度+1，生产者写完负载后以release语义写头部，头部即为可用标记；
+ * 头部为-1表示本块剩余空间不足，记录放到了下一块。
+ * 消费者会把消费过的记录清零，保证未发布的位置上读到的头部一定是0。
+ * 存储空间按块增长，第k块的容量是 size * 2^k 字节，已经分配的块会一直复用。
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-20  10:00
+ *
+ */
+public final class OffHeapEventSlot {
+
+    private static final VarHandle HEADER =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final int HEADER_SIZE = 4;
+
+    private static final int SKIP = -1;
+
+    private static final int MAX_CHUNKS = 32;
+
+    private static final byte[] ZEROS = new byte[512];
+
+    //第一块的字节数
+    private final int size;
+
+    private final AtomicReferenceArray<ByteBuffer> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    //已被生产者认领的字节数
+    private final AtomicInteger cursor = new AtomicInteger(0);
+
+    //已被消费的字节数，只由消费者修改
+    private volatile int head = 0;
+
+    //消费者解码用的缓冲区
+    private byte[] scratch = new byte[64];
+
+    public OffHeapEventSlot(int size) {
+        if (size < HEADER_SIZE) {
+            throw new IllegalArgumentException("Slot size is too small. [" + size + "]");
+        }
+        this.size = align(size);
+        chunks.set(0, allocate(this.size));
+    }
+
+    public void add(BytesRange record) {
+        add(record.data, record.offset, record.length);
+    }
+
+    public void add(byte[] data, int offset, int length) {
+        int need = align(HEADER_SIZE + length);
+        if (need < 0) {
+            throw new IllegalArgumentException("Record is too large. [" + length + "]");
+        }
+        while (true) {
+            int pos = cursor.get();
+            if (pos < 0) {
+                throw new IllegalStateException("EventSlot does not have any room for new element.");
+            }
+            int chunkIndex = chunkIndex(pos);
+            int chunkEnd = chunkStart(chunkIndex + 1);
+            if (chunkEnd - pos >= need) {
+                if (cursor.compareAndSet(pos, pos + need)) {
+                    ByteBuffer chunk = chunk(chunkIndex);
+                    int index = pos - chunkStart(chunkIndex);
+                    ByteBuffer view = chunk.duplicate();
+                    view.position(index + HEADER_SIZE);
+                    view.put(data, offset, length);
+                    HEADER.setRelease(chunk, index, length + 1);
+                    return;
+                }
+            } else if (cursor.compareAndSet(pos, chunkEnd)) {
+                //本块放不下，剩余空间标记为跳过
+                HEADER.setRelease(chunk(chunkIndex), pos - chunkStart(chunkIndex), SKIP);
+            }
+        }
+    }
+
+    /**
+     * 消费所有已认领的记录
+     * 
+     * @param consumer 收到的BytesRange只在本次调用期间有效
+     */
+    public void consume(Consumer<BytesRange> consumer) {
+        int claimed = cursor.get();
+        int pos = head;
+        try {
+            while (pos < claimed) {
+                int chunkIndex = chunkIndex(pos);
+                ByteBuffer chunk = chunk(chunkIndex);
+                int index = pos - chunkStart(chunkIndex);
+                int header;
+                while ((header = (int) HEADER.getAcquire(chunk, index)) == 0) {
+                    //已认领但还没有发布
+                    Thread.onSpinWait();
+                }
+                HEADER.setRelease(chunk, index, 0);
+                if (header == SKIP) {
+                    pos = chunkStart(chunkIndex + 1);
+                    continue;
+                }
+                int length = header - 1;
+                pos += align(HEADER_SIZE + length);
+                if (scratch.length < length) {
+                    scratch = new byte[Math.max(length, scratch.length << 1)];
+                }
+                ByteBuffer view = chunk.duplicate();
+                view.position(index + HEADER_SIZE);
+                view.get(scratch, 0, length);
+                view.position(index + HEADER_SIZE);
+                zero(view, length);
+                consumer.accept(BytesRange.of(scratch, 0, length));
+            }
+        } finally {
+            if (pos == claimed && cursor.compareAndSet(claimed, 0)) {
+                head = 0;
+            } else {
+                head = pos;
+            }
+        }
+    }
+
+    /**
+     * 尚未被消费的字节数，并发时是一个近似值
+     */
+    public int usedBytes() {
+        return Math.max(0, cursor.get() - head);
+    }
+
+    private ByteBuffer chunk(int chunkIndex) {
+        ByteBuffer chunk = chunks.get(chunkIndex);
+        if (chunk != null) {
+            return chunk;
+        }
+        ByteBuffer created = allocate((int) Math.min(Integer.MAX_VALUE - 8, (1L << chunkIndex) * size));
+        if (chunks.compareAndSet(chunkIndex, null, created)) {
+            return created;
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private int chunkIndex(int pos) {
+        return 31 - Integer.numberOfLeadingZeros(pos / size + 1);
+    }
+
+    private int chunkStart(int chunkIndex) {
+        return (int) Math.min(Integer.MAX_VALUE, ((1L << chunkIndex) - 1) * size);
+    }
+
+    private static void zero(ByteBuffer view, int length) {
+        while (length > 0) {
+            int n = Math.min(length, ZEROS.length);
+            view.put(ZEROS, 0, n);
+            length -= n;
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        //VarHandle的原子访问要求地址对齐
+        return ByteBuffer.allocateDirect(capacity + 8).alignedSlice(8);
+    }
+
+    private static int align(int length) {
+        return (length + HEADER_SIZE - 1) & -HEADER_SIZE;
+    }
+}
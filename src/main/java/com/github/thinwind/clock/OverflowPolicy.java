@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * 槽位已满时的处理策略
+ * 
+ * <ul>
+ * <li>{@link SpillOverflowPolicy} 槽位不设上限，超出第一块的事件溢出到后续的块中，默认策略</li>
+ * <li>{@link ShiftOverflowPolicy} 顺延到之后第一个有空间的tick</li>
+ * <li>{@link BlockingOverflowPolicy} 生产者等待消费者腾出空间，超时后放弃</li>
+ * <li>{@link RejectingOverflowPolicy} 直接拒绝，交给回调处理</li>
+ * </ul>
+ * 
+ * 策略中带有计数器，每个事件环使用一个单独的实例。
+ * 消费者线程自己放回的事件(周期事件、分层时间轮的降级)不受上限限制，只计入溢出
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-06  10:30
+ *
+ */
+public abstract class OverflowPolicy {
+
+    //槽位中最多容纳的未消费事件数
+    private final int capacity;
+
+    private final LongAdder spilledCount = new LongAdder();
+
+    private final LongAdder overflowCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    OverflowPolicy(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be positive. But got [" + capacity + "]");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 槽位已满时由生产者调用，此时tick已经被标记忙
+     * 
+     * @param slot tick所在的槽位
+     * @return 重新尝试写入的tick，已被标记忙；放弃时返回-1，此时原tick的忙标记已经释放
+     */
+    final long overflow(SlotSequencer sequencer, EventSlot<?> slot, long tick) {
+        overflowCount.increment();
+        return retry(sequencer, slot, tick);
+    }
+
+    abstract long retry(SlotSequencer sequencer, EventSlot<?> slot, long tick);
+
+    /**
+     * 放弃写入之后调用
+     * 
+     * @return 事件是否已经交给回调，为false时由调用方报告失败
+     */
+    boolean reject(Object event) {
+        rejectedCount.increment();
+        return false;
+    }
+
+    void spilled(int count) {
+        spilledCount.add(count);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 写入第一块之后的溢出链中的事件数
+     */
+    public long spilledCount() {
+        return spilledCount.sum();
+    }
+
+    /**
+     * 遇到槽位已满的次数
+     */
+    public long overflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * 最终放弃写入的事件数
+     */
+    public long rejectedCount() {
+        return rejectedCount.sum();
+    }
+}
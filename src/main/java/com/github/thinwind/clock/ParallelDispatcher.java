@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ *
+ * 把到期事件分发到线程池并行处理
+ * 
+ * 事件按key的hash分配到固定的通道(lane)上，每个通道同一时刻最多只有一个任务在线程池中执行，
+ * 因此同一个key的事件按到期顺序处理，不同通道之间并行。
+ * 消费者线程只负责入队，不会被慢的处理逻辑阻塞。
+ * 
+ * 使用方式:
+ * <pre>
+ * ParallelDispatcher&lt;Task&gt; dispatcher =
+ *         new ParallelDispatcher&lt;&gt;(ForkJoinPool.commonPool(), 64, Task::getKey, Task::run);
+ * ring.comsume(dispatcher);
+ * </pre>
+ * 
+ * 处理逻辑抛出的异常交给当前线程的UncaughtExceptionHandler，不影响后续事件。
+ * 线程池拒绝执行时{@link #accept(Object)}抛出{@link RejectedExecutionException}，事件仍在通道中等待处理
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-13  15:10
+ *
+ */
+public final class ParallelDispatcher<T> implements Consumer<T> {
+
+    //每次最多连续处理的事件数，之后重新提交，避免长期占用线程池中的线程
+    private static final int MAX_BATCH = 1024;
+
+    private final Executor executor;
+
+    private final Function<? super T, ?> keyMapper;
+
+    private final Consumer<? super T> handler;
+
+    private final Lane[] lanes;
+
+    private final int mask;
+
+    private final LongAdder backlog = new LongAdder();
+
+    /**
+     * @param executor 执行处理逻辑的线程池
+     * @param lanes 通道数，会向上取整到2的幂
+     * @param keyMapper 从事件中取出用于保序的key，key相同的事件按顺序处理
+     * @param handler 事件处理逻辑
+     */
+    @SuppressWarnings("unchecked")
+    public ParallelDispatcher(Executor executor, int lanes, Function<? super T, ?> keyMapper,
+            Consumer<? super T> handler) {
+        if (lanes <= 0) {
+            throw new IllegalArgumentException("Lanes must be positive. But got [" + lanes + "]");
+        }
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.keyMapper = Objects.requireNonNull(keyMapper, "keyMapper");
+        this.handler = Objects.requireNonNull(handler, "handler");
+        int size = lanes == 1 ? 1 : Integer.highestOneBit(lanes - 1) << 1;
+        this.lanes = (Lane[]) new ParallelDispatcher<?>.Lane[size];
+        for (int i = 0; i < size; i++) {
+            this.lanes[i] = new Lane();
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public void accept(T t) {
+        Object key = keyMapper.apply(t);
+        int h = key == null ? 0 : key.hashCode();
+        //与HashMap相同，把高位扰动到低位
+        Lane lane = lanes[(h ^ (h >>> 16)) & mask];
+        lane.queue.offer(t);
+        backlog.increment();
+        lane.schedule();
+    }
+
+    /**
+     * 已经分发但还没有处理完的事件数
+     */
+    public long backlog() {
+        return backlog.sum();
+    }
+
+    public int lanes() {
+        return lanes.length;
+    }
+
+    private final class Lane implements Runnable {
+
+        final Queue<T> queue = new ConcurrentLinkedQueue<>();
+
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        /**
+         * 线程池拒绝时释放通道并抛出异常，事件留在队列中，下次入队时重新提交
+         */
+        void schedule() {
+            if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < MAX_BATCH; i++) {
+                    T t = queue.poll();
+                    if (t == null) {
+                        break;
+                    }
+                    backlog.decrement();
+                    try {
+                        handler.accept(t);
+                    } catch (Throwable e) {
+                        Thread current = Thread.currentThread();
+                        current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                //释放之后可能有新事件入队
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ *
+ * 周期事件的句柄
+ * 
+ * 句柄存放在槽位中，消费者处理完事件后把同一个句柄放回之后的槽位，每个周期不分配新对象。
+ * 
+ * 固定频率的下次时间按上次的计划时间累加，落后时每个tick补一次直到追上；
+ * 固定延迟的下次时间从本次处理完成时算起。
+ * 
+ * 时间单位由事件环决定：没有指定tick时长的环以tick为单位，否则以纳秒为单位
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-04  10:15
+ *
+ */
+public final class RecurringHandle<T> {
+
+    static final int PENDING = 0;
+
+    //消费者正在处理，处理完会放回环中
+    static final int FIRING = 1;
+
+    static final int CANCELLED = 2;
+
+    //处理时抛出了异常，不再触发
+    static final int FAILED = 3;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<RecurringHandle> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(RecurringHandle.class, "state");
+
+    private final EventRing<T> ring;
+
+    private final T event;
+
+    final boolean fixedRate;
+
+    //周期，单位见类注释
+    final long period;
+
+    //下次触发的计划时间，只由消费者线程修改
+    long next;
+
+    //下次触发所在的tick
+    volatile long tick;
+
+    //最近一次触发比计划时间晚多少
+    private volatile long drift;
+
+    private volatile long fireCount;
+
+    private volatile int state = PENDING;
+
+    RecurringHandle(EventRing<T> ring, T event, boolean fixedRate, long period, long next) {
+        this.ring = ring;
+        this.event = event;
+        this.fixedRate = fixedRate;
+        this.period = period;
+        this.next = next;
+    }
+
+    /**
+     * 取消之后的所有触发，正在处理的那一次不受影响
+     * 
+     * @return 已经取消或已经失败时返回false
+     */
+    public boolean cancel() {
+        while (true) {
+            int s = state;
+            if (s == CANCELLED || s == FAILED) {
+                return false;
+            }
+            if (STATE.compareAndSet(this, s, CANCELLED)) {
+                //正在处理时句柄不在槽位中，由消费者丢弃
+                if (s == PENDING) {
+                    ring.onCancelled();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 由消费者调用，开始一次触发
+     * 
+     * @return 已经被取消时返回false
+     */
+    boolean fire(long drift) {
+        if (!STATE.compareAndSet(this, PENDING, FIRING)) {
+            return false;
+        }
+        this.drift = drift;
+        fireCount++;
+        return true;
+    }
+
+    /**
+     * 由消费者调用，处理完成后准备放回环中
+     * 
+     * @return 处理期间被取消时返回false
+     */
+    boolean rearm(long tick) {
+        this.tick = tick;
+        return STATE.compareAndSet(this, FIRING, PENDING);
+    }
+
+    void fail() {
+        STATE.compareAndSet(this, FIRING, FAILED);
+    }
+
+    public boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    /**
+     * 事件处理器抛出异常后不再触发
+     */
+    public boolean isFailed() {
+        return state == FAILED;
+    }
+
+    /**
+     * 下次触发所在的tick
+     */
+    public long tick() {
+        return tick;
+    }
+
+    /**
+     * 最近一次触发比计划时间晚多少，单位同周期
+     * 
+     * 消费者落后时大于0，固定频率的事件会在之后的tick里连续补上；消费者比墙上时钟推进得快时为负数
+     */
+    public long drift() {
+        return drift;
+    }
+
+    /**
+     * 已经触发的次数
+     */
+    public long fireCount() {
+        return fireCount;
+    }
+
+    public T event() {
+        return event;
+    }
+}
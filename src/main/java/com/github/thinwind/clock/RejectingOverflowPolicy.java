@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.function.Consumer;
+
+/**
+ *
+ * 槽位已满时直接拒绝，被拒绝的事件交给回调
+ * 
+ * 回调在生产者线程中执行，{@link EventRing#tryPut(int, Object)}同时返回false
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-06  11:20
+ *
+ */
+public final class RejectingOverflowPolicy extends OverflowPolicy {
+
+    private final Consumer<Object> onRejected;
+
+    /**
+     * @param capacity 每个槽位最多容纳的未消费事件数
+     * @param onRejected 处理被拒绝的事件
+     */
+    public RejectingOverflowPolicy(int capacity, Consumer<Object> onRejected) {
+        super(capacity);
+        this.onRejected = onRejected;
+    }
+
+    @Override
+    long retry(SlotSequencer sequencer, EventSlot<?> slot, long tick) {
+        sequencer.release(tick);
+        return -1;
+    }
+
+    @Override
+    boolean reject(Object event) {
+        super.reject(event);
+        onRejected.accept(event);
+        return true;
+    }
+}
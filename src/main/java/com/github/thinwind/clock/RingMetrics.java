@@ -0,0 +1,264 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ *
+ * 事件环的运行指标
+ * 
+ * 生产者一侧的计数使用LongAdder，避免多核争用；消费者一侧只在每个tick记录一次。
+ * 直方图是可选的，关闭时只有计数。
+ * tick延迟来自{@link #observe(TickDriver)}绑定的驱动器。
+ * 
+ * 一个实例只能绑定一个事件环
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-27  14:10
+ *
+ */
+public final class RingMetrics implements RingMetricsMXBean {
+
+    private final LongAdder puts = new LongAdder();
+
+    //生产者发现目标槽位已被消费而顺延的次数
+    private final LongAdder claimRetries = new LongAdder();
+
+    //消费者遇到槽位忙而等待的次数和时间
+    private final LongAdder waits = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final LongAdder drains = new LongAdder();
+
+    private final LongAdder drainNanos = new LongAdder();
+
+    private final LongAdder drainedEvents = new LongAdder();
+
+    private final Log2Histogram waitHistogram;
+
+    private final Log2Histogram drainHistogram;
+
+    //每个槽位消费时的事件数的最大值，只由消费者写入
+    private volatile AtomicIntegerArray slotHighWater;
+
+    private volatile TickDriver driver;
+
+    public RingMetrics() {
+        this(false);
+    }
+
+    /**
+     * @param histograms 是否记录等待和消费耗时的直方图
+     */
+    public RingMetrics(boolean histograms) {
+        waitHistogram = histograms ? new Log2Histogram() : null;
+        drainHistogram = histograms ? new Log2Histogram() : null;
+    }
+
+    synchronized void bind(int ringSize) {
+        if (slotHighWater != null) {
+            throw new IllegalStateException("RingMetrics has already been bound to a ring.");
+        }
+        slotHighWater = new AtomicIntegerArray(ringSize);
+    }
+
+    /**
+     * 绑定驱动器以获取tick延迟
+     */
+    public void observe(TickDriver driver) {
+        this.driver = driver;
+    }
+
+    void recordPut(int count) {
+        puts.add(count);
+    }
+
+    void recordClaimRetry() {
+        claimRetries.increment();
+    }
+
+    void recordWait(long nanos) {
+        waits.increment();
+        waitNanos.add(nanos);
+        if (waitHistogram != null) {
+            waitHistogram.record(nanos);
+        }
+    }
+
+    void recordDrain(int index, int occupancy, int events, long nanos) {
+        drains.increment();
+        drainNanos.add(nanos);
+        drainedEvents.add(events);
+        if (drainHistogram != null) {
+            drainHistogram.record(nanos);
+        }
+        if (occupancy > slotHighWater.get(index)) {
+            slotHighWater.lazySet(index, occupancy);
+        }
+    }
+
+    /**
+     * 槽位消费时事件数的最大值
+     */
+    public int slotHighWater(int index) {
+        return slotHighWater.get(index);
+    }
+
+    public Log2Histogram waitHistogram() {
+        return waitHistogram;
+    }
+
+    public Log2Histogram drainHistogram() {
+        return drainHistogram;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * 注册到平台MBeanServer
+     * 
+     * @param name 事件环的名字，用于区分多个实例
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName =
+                new ObjectName("com.github.thinwind.clock:type=EventRing,name=" + name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    @Override
+    public long getClaimRetryCount() {
+        return claimRetries.sum();
+    }
+
+    @Override
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    @Override
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    @Override
+    public long getDrainCount() {
+        return drains.sum();
+    }
+
+    @Override
+    public long getDrainNanos() {
+        return drainNanos.sum();
+    }
+
+    @Override
+    public long getDrainedEvents() {
+        return drainedEvents.sum();
+    }
+
+    @Override
+    public int getMaxOccupancy() {
+        AtomicIntegerArray highWater = slotHighWater;
+        int max = 0;
+        if (highWater != null) {
+            for (int i = 0; i < highWater.length(); i++) {
+                max = Math.max(max, highWater.get(i));
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public long getWaitNanosP99() {
+        return waitHistogram == null ? -1 : waitHistogram.percentile(99);
+    }
+
+    @Override
+    public long getDrainNanosP99() {
+        return drainHistogram == null ? -1 : drainHistogram.percentile(99);
+    }
+
+    @Override
+    public long getLastTickLagNanos() {
+        TickDriver d = driver;
+        return d == null ? -1 : d.getLastLagNanos();
+    }
+
+    @Override
+    public long getMaxTickLagNanos() {
+        TickDriver d = driver;
+        return d == null ? -1 : d.getMaxLagNanos();
+    }
+
+    /**
+     * 某一时刻的指标快照
+     */
+    public static final class Snapshot {
+
+        public final long putCount;
+
+        public final long claimRetryCount;
+
+        public final long waitCount;
+
+        public final long waitNanos;
+
+        public final long drainCount;
+
+        public final long drainNanos;
+
+        public final long drainedEvents;
+
+        public final int maxOccupancy;
+
+        public final long lastTickLagNanos;
+
+        public final long maxTickLagNanos;
+
+        Snapshot(RingMetrics metrics) {
+            putCount = metrics.getPutCount();
+            claimRetryCount = metrics.getClaimRetryCount();
+            waitCount = metrics.getWaitCount();
+            waitNanos = metrics.getWaitNanos();
+            drainCount = metrics.getDrainCount();
+            drainNanos = metrics.getDrainNanos();
+            drainedEvents = metrics.getDrainedEvents();
+            maxOccupancy = metrics.getMaxOccupancy();
+            lastTickLagNanos = metrics.getLastTickLagNanos();
+            maxTickLagNanos = metrics.getMaxTickLagNanos();
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot [putCount=" + putCount + ", claimRetryCount=" + claimRetryCount
+                    + ", waitCount=" + waitCount + ", waitNanos=" + waitNanos + ", drainCount="
+                    + drainCount + ", drainNanos=" + drainNanos + ", drainedEvents="
+                    + drainedEvents + ", maxOccupancy=" + maxOccupancy + ", lastTickLagNanos="
+                    + lastTickLagNanos + ", maxTickLagNanos=" + maxTickLagNanos + "]";
+        }
+    }
+}
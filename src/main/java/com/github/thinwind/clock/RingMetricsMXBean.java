@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+/**
+ *
+ * {@link RingMetrics}的JMX接口
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-27  14:00
+ *
+ */
+public interface RingMetricsMXBean {
+
+    long getPutCount();
+
+    long getClaimRetryCount();
+
+    long getWaitCount();
+
+    long getWaitNanos();
+
+    long getDrainCount();
+
+    long getDrainNanos();
+
+    long getDrainedEvents();
+
+    int getMaxOccupancy();
+
+    long getWaitNanosP99();
+
+    long getDrainNanosP99();
+
+    long getLastTickLagNanos();
+
+    long getMaxTickLagNanos();
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * 基于事件环的{@link ScheduledExecutorService}
+ * 
+ * 放入和取消都是O(1)，到期时间按tick向上取整，任务最多晚一个tick执行。
+ * 超过环跨度的延迟分多圈放入，每圈到期时检查是否真正到期。
+ * 
+ * 到期的任务交给taskExecutor执行，没有指定时直接在驱动线程中执行，此时任务不能阻塞。
+ * 周期任务和{@link java.util.concurrent.ScheduledThreadPoolExecutor}一样不会重叠执行，
+ * 抛出异常后不再执行。
+ * 
+ * shutdown之后已经放入的一次性任务照常执行，周期任务被取消；
+ * shutdownNow会停止驱动线程，取消并返回事件环中所有尚未到期的任务，
+ * 已经交给taskExecutor但还没有开始的任务也会被取消。
+ * 在驱动线程中执行的任务调用shutdownNow时，事件环中的任务在当前tick处理完之后由驱动线程取消，
+ * 不包含在返回的列表中。所有任务结束后进入终止状态
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-08  10:00
+ *
+ */
+public final class RingScheduledExecutor extends AbstractExecutorService
+        implements ScheduledExecutorService {
+
+    private static final int RUNNING = 0;
+
+    private static final int SHUTDOWN = 1;
+
+    private static final int STOP = 2;
+
+    private static final int TERMINATED = 3;
+
+    private static final int SLOT_SIZE = 16;
+
+    private final EventRing<RingFuture<?>> ring;
+
+    private final TickDriver driver;
+
+    private final Executor taskExecutor;
+
+    //没有指定taskExecutor，任务在驱动线程中执行
+    private final boolean direct;
+
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+    //尚未完成的任务数，包括周期任务
+    private final AtomicLong outstanding = new AtomicLong();
+
+    //shutdown时需要主动取消的周期任务
+    private final Set<RingFuture<?>> periodic = ConcurrentHashMap.newKeySet();
+
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    //shutdownNow时从事件环中取消的任务
+    private final List<Runnable> unstarted = new ArrayList<>();
+
+    private final AtomicBoolean drained = new AtomicBoolean(false);
+
+    public RingScheduledExecutor(int ringSize, long tickDuration, TimeUnit unit) {
+        this(ringSize, tickDuration, unit, null);
+    }
+
+    /**
+     * @param ringSize 环的大小，必须是2的幂
+     * @param tickDuration 每个tick的时长
+     * @param taskExecutor 执行到期任务的线程池，为null时在驱动线程中执行
+     */
+    public RingScheduledExecutor(int ringSize, long tickDuration, TimeUnit unit,
+            Executor taskExecutor) {
+        this.ring = new EventRing<>(ringSize, SLOT_SIZE, tickDuration, unit);
+        this.direct = taskExecutor == null;
+        this.taskExecutor = direct ? Runnable::run : taskExecutor;
+        this.driver = ring.driver(this::expire);
+        driver.onExit(this::cancelRemaining);
+        driver.start();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(new RingFuture<Void>(Executors.callable(command, null),
+                triggerTime(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return schedule(new RingFuture<>(callable, triggerTime(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay,
+            long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive. But got [" + period + "]");
+        }
+        return schedule(new RingFuture<Void>(Executors.callable(command, null),
+                triggerTime(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay,
+            long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive. But got [" + delay + "]");
+        }
+        return schedule(new RingFuture<Void>(Executors.callable(command, null),
+                triggerTime(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    /**
+     * 指定了taskExecutor时立即交给它执行，否则在下一个tick执行
+     */
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    private <V> RingFuture<V> schedule(RingFuture<V> future) {
+        if (state.get() != RUNNING) {
+            throw new RejectedExecutionException("Executor has been shut down.");
+        }
+        outstanding.incrementAndGet();
+        if (future.isPeriodic()) {
+            periodic.add(future);
+        }
+        if (!direct && future.deadline - System.nanoTime() <= 0) {
+            dispatch(future);
+        } else {
+            enqueue(future);
+        }
+        //放入期间被关闭时，和ScheduledThreadPoolExecutor一样由放入方清理
+        if (state.get() != RUNNING && (future.isPeriodic() || state.get() >= STOP)) {
+            future.cancel(false);
+        }
+        return future;
+    }
+
+    /**
+     * 放入事件环，超过环跨度时先放在最远的tick
+     */
+    private void enqueue(RingFuture<?> future) {
+        long farthest = ring.tickDeadline(ring.cursor() + ring.ringSize() - 1);
+        ring.schedule(future, Math.min(future.deadline, farthest));
+    }
+
+    /**
+     * 驱动线程中的回调，事件环的唯一消费者
+     */
+    private void expire(RingFuture<?> future) {
+        if (future.isDone()) {
+            return;
+        }
+        if (future.deadline - ring.tickDeadline(ring.cursor()) > 0) {
+            //还没有真正到期，放入下一圈
+            enqueue(future);
+            return;
+        }
+        if (future.isPeriodic() && state.get() != RUNNING) {
+            future.cancel(false);
+            return;
+        }
+        dispatch(future);
+    }
+
+    private void dispatch(RingFuture<?> future) {
+        try {
+            taskExecutor.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * 周期任务执行完一次后调用
+     */
+    private void reschedule(RingFuture<?> future) {
+        if (state.get() != RUNNING) {
+            future.cancel(false);
+            return;
+        }
+        if (future.deadline - System.nanoTime() <= 0) {
+            //落后时放入下一个tick，每个tick补一次
+            ring.schedule(future, future.deadline);
+        } else {
+            enqueue(future);
+        }
+    }
+
+    private void onDone(RingFuture<?> future) {
+        if (future.isPeriodic()) {
+            periodic.remove(future);
+        }
+        if (outstanding.decrementAndGet() == 0 && state.get() != RUNNING) {
+            tryTerminate();
+        }
+    }
+
+    private void tryTerminate() {
+        int s = state.get();
+        if (s != RUNNING && s != TERMINATED && outstanding.get() == 0
+                && state.compareAndSet(s, TERMINATED)) {
+            driver.stop();
+            terminated.countDown();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (!state.compareAndSet(RUNNING, SHUTDOWN)) {
+            return;
+        }
+        for (RingFuture<?> future : periodic) {
+            future.cancel(false);
+        }
+        if (outstanding.get() == 0) {
+            tryTerminate();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        int s;
+        while ((s = state.get()) < STOP) {
+            if (state.compareAndSet(s, STOP)) {
+                driver.stop();
+                if (driver.inDriverThread()) {
+                    //正在消费事件环，驱动线程退出前再取消剩下的任务
+                    return new ArrayList<>();
+                }
+                //驱动线程已经退出，通常已经取消过了；驱动线程之前异常退出时由当前线程取消
+                cancelRemaining();
+                tryTerminate();
+                return new ArrayList<>(unstarted);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * 取消事件环中所有的任务，只能在驱动线程退出时或者退出之后调用，此时调用方是事件环唯一的消费者
+     */
+    private void cancelRemaining() {
+        if (state.get() < STOP || !drained.compareAndSet(false, true)) {
+            return;
+        }
+        for (int i = 0; i < ring.ringSize(); i++) {
+            ring.comsume(future -> {
+                if (future.cancel(false)) {
+                    unstarted.add(future);
+                }
+            });
+        }
+        tryTerminate();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state.get() != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return state.get() == TERMINATED;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private static long triggerTime(long delay, TimeUnit unit) {
+        long now = System.nanoTime();
+        long nanos = unit.toNanos(Math.max(delay, 0));
+        //截止时间溢出时按最大值处理
+        return nanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos;
+    }
+
+    /**
+     * 任务本身就是放入事件环的事件，取消时只修改状态，到期时由消费者跳过
+     */
+    private final class RingFuture<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        //以System.nanoTime()为基准的截止时间，只在放入事件环之前修改
+        volatile long deadline;
+
+        //为0时是一次性任务，大于0时是固定频率，小于0时是固定延迟
+        private final long period;
+
+        RingFuture(Callable<V> callable, long deadline, long period) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS),
+                    other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public void run() {
+            if (state.get() >= STOP) {
+                //已经交给taskExecutor但还没有开始
+                cancel(false);
+            } else if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset()) {
+                deadline = period > 0 ? deadline + period : System.nanoTime() - period;
+                reschedule(this);
+            }
+        }
+
+        @Override
+        protected void done() {
+            onDone(this);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ *
+ * 分片事件环
+ * 
+ * 内部持有多个相互独立的{@link EventRing}，生产者按线程或key选择分片，
+ * 不同分片之间没有共享的原子变量，避免多核下对同一个忙标记和槽位游标的争用。
+ * 每次消费时所有分片一起推进一个tick。
+ * 
+ * 同一个tick内，不同分片上的事件之间没有先后顺序
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-16  14:30
+ *
+ */
+public final class ShardedEventRing<T> {
+
+    private final EventRing<T>[] shards;
+
+    //为新线程分配分片
+    private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+    private final ThreadLocal<EventRing<T>> threadShard;
+
+    /**
+     * @param shards 分片数，一般取CPU核数
+     * @param ringSize 每个分片的环大小
+     * @param slotSize 每个分片的槽位初始容量
+     */
+    public ShardedEventRing(int shards, int ringSize, int slotSize) {
+        this(shards, ringSize, slotSize, new YieldingWaitStrategy());
+    }
+
+    @SuppressWarnings("all")
+    public ShardedEventRing(int shards, int ringSize, int slotSize, WaitStrategy waitStrategy) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shards must be positive. But got [" + shards + "]");
+        }
+        this.shards = new EventRing[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new EventRing<>(ringSize, slotSize, waitStrategy);
+        }
+        threadShard = ThreadLocal.withInitial(
+                () -> this.shards[Math.floorMod(threadCounter.getAndIncrement(), shards)]);
+    }
+
+    /**
+     * 放入当前线程绑定的分片
+     */
+    public void put(int pos, T t) {
+        threadShard.get().put(pos, t);
+    }
+
+    public EventHandle<T> putCancellable(int pos, T t) {
+        return threadShard.get().putCancellable(pos, t);
+    }
+
+    public void putAll(int pos, T[] events) {
+        threadShard.get().putAll(pos, events);
+    }
+
+    /**
+     * 放入key对应的分片，相同key的事件总是在同一个分片中
+     */
+    public void put(Object key, int pos, T t) {
+        shardFor(key).put(pos, t);
+    }
+
+    public EventHandle<T> putCancellable(Object key, int pos, T t) {
+        return shardFor(key).putCancellable(pos, t);
+    }
+
+    /**
+     * 所有分片推进一个tick，依次消费各分片的槽位
+     */
+    public void comsume(Consumer<T> consumer) {
+        for (EventRing<T> shard : shards) {
+            shard.comsume(consumer);
+        }
+    }
+
+    /**
+     * 所有分片推进一个tick，在线程池中并行消费各分片的槽位，全部完成后返回
+     * 
+     * 线程池拒绝的分片在当前线程中消费，保证所有分片都推进同样的tick数
+     * 
+     * @param consumer 会被多个线程同时调用，必须是线程安全的
+     * @param executor 执行消费的线程池
+     */
+    public void comsume(Consumer<T> consumer, Executor executor) {
+        CountDownLatch latch = new CountDownLatch(shards.length);
+        for (EventRing<T> shard : shards) {
+            Runnable task = () -> {
+                try {
+                    shard.comsume(consumer);
+                } finally {
+                    latch.countDown();
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long pendingCount() {
+        long count = 0;
+        for (EventRing<T> shard : shards) {
+            count += shard.pendingCount();
+        }
+        return count;
+    }
+
+    public long cancelledCount() {
+        long count = 0;
+        for (EventRing<T> shard : shards) {
+            count += shard.cancelledCount();
+        }
+        return count;
+    }
+
+    public int shards() {
+        return shards.length;
+    }
+
+    public EventRing<T> shard(int index) {
+        return shards[index];
+    }
+
+    private EventRing<T> shardFor(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+/**
+ *
+ * 槽位已满时顺延到下一个tick，直到找到有空间的槽位
+ * 
+ * 顺延到环的末尾仍然没有空间时放弃，事件最多比预定时间晚 环的大小-1 个tick
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-06  10:50
+ *
+ */
+public final class ShiftOverflowPolicy extends OverflowPolicy {
+
+    /**
+     * @param capacity 每个槽位最多容纳的未消费事件数
+     */
+    public ShiftOverflowPolicy(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    long retry(SlotSequencer sequencer, EventSlot<?> slot, long tick) {
+        sequencer.release(tick);
+        long next = tick + 1;
+        if (next - sequencer.cursor() >= sequencer.ringSize()) {
+            return -1;
+        }
+        return sequencer.claimTick(next);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * 自旋、让出CPU之后，以指数退避的方式park
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-09  16:45
+ *
+ */
+public final class SleepingWaitStrategy implements WaitStrategy {
+
+    private static final int DEFAULT_RETRIES = 200;
+
+    private static final long DEFAULT_MIN_PARK_NANOS = 1_000;
+
+    private static final long DEFAULT_MAX_PARK_NANOS = 1_000_000;
+
+    private final int retries;
+
+    private final long minParkNanos;
+
+    private final long maxParkNanos;
+
+    public SleepingWaitStrategy() {
+        this(DEFAULT_RETRIES, DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    /**
+     * @param retries 开始park之前的重试次数，前一半自旋，后一半让出CPU
+     * @param minParkNanos 第一次park的时长
+     * @param maxParkNanos park时长的上限
+     */
+    public SleepingWaitStrategy(int retries, long minParkNanos, long maxParkNanos) {
+        if (minParkNanos <= 0 || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("Invalid park nanos [" + minParkNanos + ", "
+                    + maxParkNanos + "]");
+        }
+        this.retries = retries;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void waitFor(BusyMap busyMap, int index) {
+        int counter = retries;
+        long parkNanos = minParkNanos;
+        while (busyMap.isBusy(index)) {
+            if (counter > retries / 2) {
+                counter--;
+                Thread.onSpinWait();
+            } else if (counter > 0) {
+                counter--;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+            }
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import com.github.thinwind.lang.BitUtil;
+
+/**
+ *
+ * 事件环的游标和槽位忙标记
+ * 
+ * 生产者写入槽位前先标记忙，再检查消费者位置：
+ * 如果消费者还没有到达该tick，那么它到达后会看到忙标记并等待写入完成；
+ * 反之，说明该槽位可能已经被消费，需要放弃或顺延。
+ * 
+ * 各种事件环共用这一套协议，只是槽位的存储方式不同
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-17  10:10
+ *
+ */
+final class SlotSequencer {
+
+    //存储数据环的大小
+    private final int ringSize;
+
+    private final int mask;
+
+    private final BusyMap busyMap;
+
+    private final WaitStrategy waitStrategy;
+
+    //可以为null
+    private final RingMetrics metrics;
+
+    //最近一次被消费的tick，单调递增，只由消费者线程修改
+    private volatile long cursor = 0;
+
+    SlotSequencer(int ringSize, WaitStrategy waitStrategy) {
+        this(ringSize, waitStrategy, null);
+    }
+
+    SlotSequencer(int ringSize, WaitStrategy waitStrategy, RingMetrics metrics) {
+        if (!BitUtil.powerOf2(ringSize) || ringSize < 2) {
+            throw new IllegalArgumentException(
+                    "Ring size must be a power of 2. But got [" + ringSize + "]");
+        }
+        this.ringSize = ringSize;
+        this.mask = ringSize - 1;
+        this.busyMap = new BusyMap(ringSize);
+        this.waitStrategy = waitStrategy;
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.bind(ringSize);
+        }
+    }
+
+    /**
+     * 把相对偏移量转成tick并标记忙，目标已被消费时顺延
+     * 
+     * @param pos 相对当前位置的偏移量，0 会被当作 1 处理，必须小于环的大小
+     * @return 被标记的tick
+     */
+    long claim(int pos) {
+        if (pos < 0 || pos >= ringSize) {
+            throw new IllegalArgumentException(
+                    "Position must be in [0, " + ringSize + "). But got [" + pos + "]");
+        }
+        if (pos == 0) {
+            pos = 1;
+        }
+        return makeBusy(cursor + pos, true);
+    }
+
+    /**
+     * 在绝对tick上标记忙，目标已被消费时放弃
+     * 
+     * tick与cursor的距离最大可以等于环的大小，此时写入的是刚刚消费完的槽位，
+     * 只有消费者线程自己可以这么做
+     * 
+     * @return 被标记的tick，放弃时返回-1
+     */
+    long claimAt(long tick) {
+        if (tick - cursor > ringSize) {
+            throw new IllegalArgumentException(
+                    "Tick [" + tick + "] is out of ring range, cursor is [" + cursor + "]");
+        }
+        return makeBusy(tick, false);
+    }
+
+    /**
+     * 在绝对tick上标记忙，目标已被消费时顺延到下一个待消费的tick
+     * 
+     * 和先读cursor再调用{@link #claim(int)}不同，这里不会因为读取cursor之后消费者前进而多等一个tick
+     * 
+     * @param tick 绝对tick，与cursor的距离必须小于环的大小
+     * @return 被标记的tick
+     */
+    long claimTick(long tick) {
+        long current = cursor;
+        if (tick - current >= ringSize) {
+            throw new IllegalArgumentException(
+                    "Tick [" + tick + "] is out of ring range, cursor is [" + current + "]");
+        }
+        return makeBusy(Math.max(tick, current + 1), true);
+    }
+
+    /**
+     * 释放忙标记，tick为负数时忽略
+     */
+    void release(long tick) {
+        if (tick < 0) {
+            return;
+        }
+        if (busyMap.decrement(index(tick))) {
+            waitStrategy.signalAllWhenBlocking();
+        }
+    }
+
+    /**
+     * 推进到下一个tick，等待其槽位写入完成
+     * 
+     * @return 可以消费的槽位下标
+     */
+    int next() {
+        long next = cursor + 1;
+        cursor = next;
+        int index = index(next);
+        if (metrics != null && busyMap.isBusy(index)) {
+            long start = System.nanoTime();
+            waitStrategy.waitFor(busyMap, index);
+            metrics.recordWait(System.nanoTime() - start);
+        } else {
+            waitStrategy.waitFor(busyMap, index);
+        }
+        return index;
+    }
+
+    /**
+     * 最近一次被消费的tick
+     */
+    long cursor() {
+        return cursor;
+    }
+
+    int ringSize() {
+        return ringSize;
+    }
+
+    int index(long tick) {
+        return (int) tick & mask;
+    }
+
+    /**
+     * @param shift 目标已经被消费时，是否顺延到下一个待消费的tick
+     * @return 被标记的tick，放弃时返回-1
+     */
+    private long makeBusy(long tick, boolean shift) {
+        do {
+            busyMap.increment(index(tick));
+            long current = cursor;
+            if (tick > current) {
+                return tick;
+            }
+            release(tick);
+            if (metrics != null) {
+                metrics.recordClaimRetry();
+            }
+            if (!shift) {
+                return -1;
+            }
+            tick = current + 1;
+        } while (true);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+/**
+ *
+ * 槽位不设上限，第一块写满后溢出到按倍数增长的后续块中
+ * 
+ * 写入永远不会失败，溢出的事件数见{@link #spilledCount()}
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-06  10:40
+ *
+ */
+public final class SpillOverflowPolicy extends OverflowPolicy {
+
+    public SpillOverflowPolicy() {
+        super(Integer.MAX_VALUE);
+    }
+
+    @Override
+    long retry(SlotSequencer sequencer, EventSlot<?> slot, long tick) {
+        //不会被调用，int范围内的位置用完时槽位自己会抛出异常
+        sequencer.release(tick);
+        return -1;
+    }
+}
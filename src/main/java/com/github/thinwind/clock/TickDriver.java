@@ -0,0 +1,250 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+
+/**
+ *
+ * 按墙上时钟推进tick的驱动器
+ * 
+ * 第n个tick的截止时间是 start + n * tickNanos，驱动线程park到截止时间后回调onTick。
+ * 如果因为GC或调度停顿错过了多个tick，醒来后会连续补齐，不会丢tick，
+ * 也不会因为停顿而整体后移。
+ * 
+ * 使用方式:
+ * <pre>
+ * TickDriver driver = new TickDriver(1, TimeUnit.MILLISECONDS, tick -&gt; ring.comsume(handler));
+ * driver.start();
+ * </pre>
+ * 
+ * onTick抛出的异常会终止驱动线程，之后{@link #isRunning()}返回false
+ * 
+ * 由{@link EventRing#driver(java.util.function.Consumer)}创建的驱动器在空闲时跳过没有事件的tick，
+ * 直接睡到下一个有事件的tick，醒来后只回调一次onTick，参数是当前应该到达的tick
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-07  14:20
+ *
+ */
+public final class TickDriver {
+
+    //剩余时间小于此值时自旋等待，park的精度通常在50us左右
+    private static final long SPIN_THRESHOLD_NANOS = 50_000;
+
+    private final long tickNanos;
+
+    private final LongConsumer onTick;
+
+    private final Thread thread;
+
+    //startNanos是否由创建者指定，见EventRing#driver
+    private final boolean fixedStart;
+
+    //根据已经执行的tick给出下一个需要醒来的tick，为null时每个tick都醒来
+    private final LongUnaryOperator nextDue;
+
+    //驱动线程退出前在驱动线程中执行
+    private volatile Runnable onExit;
+
+    private volatile boolean running;
+
+    private volatile long startNanos;
+
+    //已经执行的tick数
+    private volatile long tick;
+
+    //最近一次tick相对截止时间的延迟
+    private volatile long lastLagNanos;
+
+    private volatile long maxLagNanos;
+
+    //为了追赶进度而连续执行的tick总数
+    private volatile long catchUpTicks;
+
+    public TickDriver(long tickDuration, TimeUnit unit, LongConsumer onTick) {
+        this(tickDuration, unit, onTick, "legendary-clock-tick");
+    }
+
+    public TickDriver(long tickDuration, TimeUnit unit, LongConsumer onTick, String threadName) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException(
+                    "Tick duration must be positive. But got [" + tickDuration + " " + unit + "]");
+        }
+        this.onTick = onTick;
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.fixedStart = false;
+        this.nextDue = null;
+    }
+
+    /**
+     * 以给定的时间作为第0个tick，启动时不再重新取时间
+     * 
+     * @param nextDue 根据已经执行的tick给出下一个需要醒来的tick，提前有事件时通过{@link #wakeup()}唤醒
+     */
+    TickDriver(long tickNanos, long startNanos, LongConsumer onTick, String threadName,
+            LongUnaryOperator nextDue) {
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        this.onTick = onTick;
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.fixedStart = true;
+        this.nextDue = nextDue;
+    }
+
+    /**
+     * 设置驱动线程退出前执行的动作，此时当前的tick回调已经返回
+     */
+    void onExit(Runnable action) {
+        this.onExit = action;
+    }
+
+    boolean inDriverThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * 唤醒驱动线程重新计算下一个需要醒来的tick
+     */
+    void wakeup() {
+        LockSupport.unpark(thread);
+    }
+
+    public synchronized void start() {
+        if (running || thread.isAlive()) {
+            throw new IllegalStateException("TickDriver has already been started.");
+        }
+        if (!fixedStart) {
+            startNanos = System.nanoTime();
+        }
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * 停止驱动线程，并等待其退出
+     * 
+     * 在tick回调中调用时不会等待
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            loop();
+        } finally {
+            //onTick抛出异常时驱动线程退出，状态要与之一致
+            running = false;
+            Runnable action = onExit;
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+
+    private void loop() {
+        long current = 0;
+        while (running) {
+            long target = nextDue == null ? current + 1 : nextDue.applyAsLong(current);
+            long deadline = startNanos + target * tickNanos;
+            long now = System.nanoTime();
+            long wait = deadline - now;
+            if (wait > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(this, wait - SPIN_THRESHOLD_NANOS);
+                continue;
+            }
+            if (wait > 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long lag = -wait;
+            lastLagNanos = lag;
+            if (lag > maxLagNanos) {
+                maxLagNanos = lag;
+            }
+            //补齐到当前时间应该到达的tick
+            long due = (now - startNanos) / tickNanos;
+            if (due > target) {
+                catchUpTicks += due - target;
+            }
+            if (nextDue != null) {
+                //跳过的tick由回调自己推进
+                onTick.accept(due);
+                current = due;
+                tick = current;
+                continue;
+            }
+            while (current < due && running) {
+                onTick.accept(++current);
+                tick = current;
+            }
+        }
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * 驱动器启动时的{@link System#nanoTime()}，第0个tick的时间
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * 已经执行的tick数
+     */
+    public long currentTick() {
+        return tick;
+    }
+
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    public long getCatchUpTicks() {
+        return catchUpTicks;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+/**
+ *
+ * 把截止时间换算成tick时的取整方式
+ * 
+ * tick t 的到期时间是 origin + t * tickNanos，消费者处理该tick不会早于这个时间
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-01  09:30
+ *
+ */
+public enum TickRounding {
+
+    /**
+     * 向上取整，事件不会早于截止时间触发，最多晚一个tick
+     */
+    UP {
+        @Override
+        long toTicks(long nanos, long tickNanos) {
+            return -Math.floorDiv(-nanos, tickNanos);
+        }
+    },
+
+    /**
+     * 向下取整，事件不会晚于截止时间触发，最多早一个tick
+     */
+    DOWN {
+        @Override
+        long toTicks(long nanos, long tickNanos) {
+            return Math.floorDiv(nanos, tickNanos);
+        }
+    },
+
+    /**
+     * 取最近的tick，误差在半个tick以内
+     */
+    NEAREST {
+        @Override
+        long toTicks(long nanos, long tickNanos) {
+            return Math.floorDiv(nanos + tickNanos / 2, tickNanos);
+        }
+    };
+
+    abstract long toTicks(long nanos, long tickNanos);
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import com.github.thinwind.lang.BytesRange;
+
+/**
+ *
+ * 基于内存映射文件的事件日志
+ * 
+ * 记录放入、取消和tick推进，进程重启后通过重放日志重建事件环。
+ * 生产者只把记录放入内存队列，由后台线程批量写入映射文件并刷盘(组提交)，
+ * 不在put的调用路径上做IO。
+ * 
+ * 记录格式: [类型 1字节][长度 4字节][CRC32 4字节][内容]
+ * <ul>
+ * <li>PUT/CANCEL 内容为 tick(8字节) + 编码后的事件</li>
+ * <li>TICK 内容为 tick(8字节)，表示此tick及之前的事件都已经到期</li>
+ * </ul>
+ * 重放时遇到类型为0或校验失败的记录即认为日志结束。
+ * 
+ * 检查点会把仍然有效的PUT写入一个新文件并原子替换旧文件，以此压缩日志。
+ * 
+ * 恢复保证至少一次: 崩溃前刚刚到期、但TICK记录还没有落盘的事件，恢复后会再次到期
+ * 
+ * 写线程遇到IO错误后退出，之后记录、{@link #flush()}和{@link #close()}都会抛出异常，异常的cause是原始的IO错误
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-22  15:40
+ *
+ */
+public final class TimerJournal<T> {
+
+    private static final byte PUT = 1;
+
+    private static final byte CANCEL = 2;
+
+    private static final byte TICK = 3;
+
+    private static final int HEADER_SIZE = 9;
+
+    private static final int TICK_SIZE = 8;
+
+    private static final long DEFAULT_FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path file;
+
+    private final EventCodec<T> codec;
+
+    private final long flushIntervalNanos;
+
+    private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+
+    //已入队的记录数
+    private final AtomicLong enqueued = new AtomicLong(0);
+
+    //已写入并刷盘的记录数
+    private volatile long written = 0;
+
+    private volatile boolean checkpointRequested = false;
+
+    private volatile boolean running = false;
+
+    //写线程退出的原因，之后不再接受记录
+    private volatile IOException failure;
+
+    private Thread writer;
+
+    //以下字段只由写线程使用
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    private final CRC32 crc = new CRC32();
+
+    public TimerJournal(Path file, EventCodec<T> codec, int initialSize) throws IOException {
+        this(file, codec, initialSize, DEFAULT_FLUSH_INTERVAL_NANOS);
+    }
+
+    /**
+     * @param file 日志文件，不存在时创建
+     * @param codec 事件编解码
+     * @param initialSize 映射区域的初始大小，写满后翻倍
+     * @param flushIntervalNanos 没有新记录时写线程的休眠时间
+     */
+    public TimerJournal(Path file, EventCodec<T> codec, int initialSize, long flushIntervalNanos)
+            throws IOException {
+        this.file = file;
+        this.codec = codec;
+        this.flushIntervalNanos = flushIntervalNanos;
+        open(Math.max(initialSize, 64));
+    }
+
+    /**
+     * 重放日志，把仍然有效的事件放入事件环，并以事件环的当前位置写入新的检查点
+     * 
+     * 必须在{@link #start()}之前调用
+     * 
+     * 事件的剩余延迟相对日志中最后一个TICK记录计算，不扣除停机的时间。
+     * 被事件环的溢出策略拒绝的事件交给溢出策略处理，不写入新的日志，也不回调onRecovered
+     * 
+     * @param ring 要重建的事件环
+     * @param onRecovered 每个恢复的事件的句柄，调用方可以据此重新建立索引
+     * @return 恢复的事件数
+     */
+    public int recover(EventRing<T> ring, Consumer<EventHandle<T>> onRecovered)
+            throws IOException {
+        if (running) {
+            throw new IllegalStateException("TimerJournal has already been started.");
+        }
+        long[] lastTick = {0};
+        List<byte[]> live = liveRecords(lastTick);
+        int[] recovered = {0};
+        rewrite(out -> {
+            append(out, TICK, tick(ring.cursor()));
+            for (byte[] body : live) {
+                //相对最后记录的tick，超过一圈的放在最后一个tick
+                long delay = ByteBuffer.wrap(body).getLong() - lastTick[0];
+                int pos = (int) Math.max(1, Math.min(delay, ring.ringSize() - 1));
+                T event = codec.decode(BytesRange.of(body, TICK_SIZE, body.length - TICK_SIZE));
+                EventHandle<T> handle = ring.putCancellable(pos, event);
+                if (handle == null) {
+                    continue;
+                }
+                ByteBuffer.wrap(body).putLong(handle.tick());
+                append(out, PUT, body);
+                onRecovered.accept(handle);
+                recovered[0]++;
+            }
+        });
+        return recovered[0];
+    }
+
+    public synchronized void start() {
+        if (running) {
+            throw new IllegalStateException("TimerJournal has already been started.");
+        }
+        running = true;
+        writer = new Thread(this::run, "legendary-clock-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void logPut(long tick, T event) {
+        enqueue(PUT, tick, codec.encode(event));
+    }
+
+    public void logCancel(long tick, T event) {
+        enqueue(CANCEL, tick, codec.encode(event));
+    }
+
+    public void logTick(long tick) {
+        enqueue(TICK, tick, BytesRange.NONE);
+    }
+
+    /**
+     * 请求写线程在下一批记录之后做一次检查点
+     */
+    public void checkpoint() {
+        checkpointRequested = true;
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * 等待调用之前入队的记录全部写入并刷盘
+     */
+    public void flush() {
+        checkWriter();
+        long target = enqueued.get();
+        while (written < target) {
+            if (!running) {
+                //写线程先记录失败原因再退出
+                checkWriter();
+                throw new IllegalStateException("TimerJournal is not running.");
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, flushIntervalNanos);
+        }
+    }
+
+    /**
+     * 停止写线程，写入剩余记录后关闭文件
+     */
+    public void close() throws IOException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            boolean interrupted = false;
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        channel.close();
+        if (failure != null) {
+            throw new IOException("Journal writer failed.", failure);
+        }
+    }
+
+    private void checkWriter() {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Journal writer failed.", e);
+        }
+    }
+
+    private void enqueue(byte type, long tick, BytesRange payload) {
+        checkWriter();
+        //内容前加一个字节的类型，由写线程拆出
+        byte[] record = new byte[1 + TICK_SIZE + payload.length];
+        record[0] = type;
+        ByteBuffer.wrap(record, 1, TICK_SIZE).putLong(tick);
+        System.arraycopy(payload.data, payload.offset, record, 1 + TICK_SIZE, payload.length);
+        queue.offer(record);
+        enqueued.incrementAndGet();
+    }
+
+    private void run() {
+        try {
+            while (running || !queue.isEmpty()) {
+                long count = 0;
+                byte[] record;
+                while ((record = queue.poll()) != null) {
+                    append(record);
+                    count++;
+                }
+                if (count > 0) {
+                    //组提交: 一批记录只刷一次盘
+                    buffer.force();
+                    written += count;
+                }
+                if (checkpointRequested) {
+                    checkpointRequested = false;
+                    compact();
+                }
+                if (count == 0 && running) {
+                    LockSupport.parkNanos(this, flushIntervalNanos);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            //队列中剩下的记录不会再写入
+            queue.clear();
+        } finally {
+            running = false;
+        }
+    }
+
+    private void append(byte[] record) throws IOException {
+        int length = record.length - 1;
+        ensureCapacity(HEADER_SIZE + length);
+        crc.reset();
+        crc.update(record, 1, length);
+        buffer.put(record[0]).putInt(length).putInt((int) crc.getValue()).put(record, 1, length);
+    }
+
+    private void append(DataOutputStream out, byte type, byte[] body) throws IOException {
+        crc.reset();
+        crc.update(body, 0, body.length);
+        out.writeByte(type);
+        out.writeInt(body.length);
+        out.writeInt((int) crc.getValue());
+        out.write(body);
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        int position = buffer.position();
+        long capacity = buffer.capacity();
+        while (capacity - position < length) {
+            capacity <<= 1;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Journal is too large, a checkpoint is required.");
+        }
+        buffer.force();
+        buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+        buffer.position(position);
+    }
+
+    /**
+     * 压缩日志: 只保留最后的tick和仍然有效的PUT
+     */
+    private void compact() throws IOException {
+        buffer.force();
+        long[] lastTick = {0};
+        List<byte[]> live = liveRecords(lastTick);
+        rewrite(out -> {
+            append(out, TICK, tick(lastTick[0]));
+            for (byte[] body : live) {
+                append(out, PUT, body);
+            }
+        });
+    }
+
+    /**
+     * 扫描日志，返回尚未到期也没有被取消的PUT内容
+     */
+    private List<byte[]> liveRecords(long[] lastTick) {
+        List<byte[]> puts = new ArrayList<>();
+        //同一tick上内容相同的事件无法区分，取消任意一个都是等价的
+        Map<BytesRange, Integer> cancels = new HashMap<>();
+        scan(buffer, (type, body) -> {
+            long tick = ByteBuffer.wrap(body).getLong();
+            if (type == TICK) {
+                lastTick[0] = Math.max(lastTick[0], tick);
+            } else if (type == PUT) {
+                puts.add(body);
+            } else if (type == CANCEL) {
+                cancels.merge(BytesRange.of(body), 1, Integer::sum);
+            }
+        });
+        List<byte[]> live = new ArrayList<>();
+        for (byte[] body : puts) {
+            if (ByteBuffer.wrap(body).getLong() <= lastTick[0]) {
+                //已经到期
+                continue;
+            }
+            BytesRange key = BytesRange.of(body);
+            Integer cancelled = cancels.get(key);
+            if (cancelled != null) {
+                if (cancelled == 1) {
+                    cancels.remove(key);
+                } else {
+                    cancels.put(key, cancelled - 1);
+                }
+                continue;
+            }
+            live.add(body);
+        }
+        return live;
+    }
+
+    /**
+     * 写一个新文件并原子替换旧文件
+     */
+    private void rewrite(Writer writer) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(buffer.position(), 64));
+        writer.write(new DataOutputStream(bytes));
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+            out.force(true);
+        }
+        int capacity = buffer.capacity();
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        open(capacity);
+    }
+
+    private void open(int capacity) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = Math.max(capacity, channel.size());
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal is too large. [" + size + "]");
+        }
+        buffer = channel.map(MapMode.READ_WRITE, 0, size);
+        int end = scan(buffer, (type, body) -> {
+        });
+        //清掉崩溃时写了一半的记录，避免和之后追加的记录混在一起
+        for (int i = end; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.position(end);
+    }
+
+    /**
+     * 从头扫描日志
+     * 
+     * @return 最后一条有效记录之后的位置
+     */
+    private int scan(ByteBuffer source, RecordVisitor visitor) {
+        ByteBuffer view = source.duplicate();
+        CRC32 checksum = new CRC32();
+        int pos = 0;
+        while (pos + HEADER_SIZE <= view.capacity()) {
+            byte type = view.get(pos);
+            int length = view.getInt(pos + 1);
+            if (type == 0 || length < TICK_SIZE || length > view.capacity() - pos - HEADER_SIZE) {
+                break;
+            }
+            byte[] body = new byte[length];
+            view.position(pos + HEADER_SIZE);
+            view.get(body);
+            checksum.reset();
+            checksum.update(body, 0, length);
+            if ((int) checksum.getValue() != view.getInt(pos + 5)) {
+                break;
+            }
+            visitor.visit(type, body);
+            pos += HEADER_SIZE + length;
+        }
+        return pos;
+    }
+
+    private static byte[] tick(long tick) {
+        return ByteBuffer.allocate(TICK_SIZE).putLong(tick).array();
+    }
+
+    private interface RecordVisitor {
+
+        void visit(byte type, byte[] body);
+    }
+
+    private interface Writer {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.clock;
+
+/**
+ *
+ * 消费者等待槽位写入完成的策略
+ * 
+ * 参考Disruptor的WaitStrategy，在延迟和CPU占用之间取舍:
+ * <ul>
+ * <li>{@link BusySpinWaitStrategy} 延迟最低，独占一个核</li>
+ * <li>{@link YieldingWaitStrategy} 自旋后让出CPU，默认策略</li>
+ * <li>{@link SleepingWaitStrategy} 自旋、让出后逐步退避park</li>
+ * <li>{@link BlockingWaitStrategy} 锁和条件变量，CPU占用最低</li>
+ * </ul>
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-06-09  16:30
+ *
+ */
+public interface WaitStrategy {
+
+    /**
+     * 等待直到槽位空闲
+     * 
+     * @param busyMap 忙标记
+     * @param index 槽位
+     */
+    void waitFor(BusyMap busyMap, int index);
+
+    /**
+     * 槽位变为空闲时由生产者调用，唤醒阻塞中的消费者
+     */
+    void signalAllWhenBlocking();
+}
@@ -90,6 +90,10 @@ public final class BitUtil {
         return new String(bytes.data, bytes.offset, bytes.length, ASCII_CHARSET);
     }
 
+    public static String toAsciiString(ByteSequence bytes) {
+        return decode(bytes, ASCII_CHARSET);
+    }
+
     /**
      * 将字节转为GBK字符串
      * @param data 字节数组
@@ -105,6 +109,10 @@ public final class BitUtil {
         return new String(bytes.data, bytes.offset, bytes.length, GBK_CHARSET);
     }
 
+    public static String toGBKString(ByteSequence bytes) {
+        return decode(bytes, GBK_CHARSET);
+    }
+
     /**
      * 将字节转为UTF-8字符串
      * @param data 字节数组
@@ -120,6 +128,21 @@ public final class BitUtil {
         return new String(bytes.data, bytes.offset, bytes.length, UTF8_CHARSET);
     }
 
+    public static String toUtf8String(ByteSequence bytes) {
+        return decode(bytes, UTF8_CHARSET);
+    }
+
+    /**
+     * 堆上的片段直接解码，其余的先复制到堆上
+     */
+    private static String decode(ByteSequence bytes, Charset charset) {
+        if (bytes instanceof BytesRange) {
+            BytesRange range = (BytesRange) bytes;
+            return new String(range.data, range.offset, range.length, charset);
+        }
+        return new String(bytes.bytesCopy(), charset);
+    }
+
     /**
      * 将字符串编码成GBK对应的字节数组
      * 
@@ -187,6 +210,26 @@ public final class BitUtil {
         return toHexString(bytes.data, bytes.offset, bytes.length);
     }
 
+    /**
+     * 将一个字节序列转为hex表示的字符串，逐个字节读取，不复制到堆上
+     * 
+     * @param bytes 要转换的字节序列
+     * @return 16进制全大写字符串
+     */
+    public static String toHexString(ByteSequence bytes) {
+        if (bytes instanceof BytesRange) {
+            return toHexString((BytesRange) bytes);
+        }
+        int length = bytes.length();
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = bytes.byteAt(i);
+            chars[2 * i] = HEX_DIGITS[(b >>> 4) & HALF_BYTE_MASK];
+            chars[2 * i + 1] = HEX_DIGITS[b & HALF_BYTE_MASK];
+        }
+        return new String(chars);
+    }
+
     /**
      * 将一个byte数组转为hex表示的字符串
      * 
@@ -271,6 +314,15 @@ public final class BitUtil {
         return r;
     }
 
+    public static int joinBytesToUnsignedInt(ByteSequence bytes) {
+        int r = 0;
+        for (int i = 0, cnt = bytes.length(); i < cnt; i++) {
+            int mask = 0xff << ((cnt - i - 1) * 8);
+            r = r | ((bytes.byteAt(i) << ((cnt - i - 1) * 8)) & mask);
+        }
+        return r;
+    }
+
     /**
      * 将 hex表示的字符串转为byte数组
      * 
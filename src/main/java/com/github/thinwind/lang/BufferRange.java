@@ -0,0 +1,255 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.lang;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * 一个{@link ByteBuffer}的片段，可以是堆、直接内存或者文件映射的缓冲区
+ *
+ * 只使用绝对下标访问缓冲区，不修改也不依赖它的position和limit，多个片段可以共享同一个缓冲区。
+ * 截取子序列不复制数据，只有{@link #getBytes()}和{@link #bytesCopy()}会把数据复制到堆上。
+ *
+ * 单个映射最大2G，更大的文件按区域分别调用{@link #map(FileChannel, long, int)}
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-18  15:10
+ *
+ */
+public final class BufferRange implements ByteSequence, Comparable<BufferRange> {
+
+    public static final BufferRange NONE = new BufferRange(ByteBuffer.allocate(0), 0, 0);
+
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    private final int length;
+
+    private byte[] bytes;
+
+    private String hexValue;
+
+    //0表示还没有计算，与内容相同的BytesRange的hash一致
+    private int hash;
+
+    /**
+     * 缓冲区position到limit之间的数据
+     */
+    public static BufferRange of(ByteBuffer buffer) {
+        return of(buffer, buffer.position(), buffer.remaining());
+    }
+
+    /**
+     * 片段必须在缓冲区的limit之内，{@link ByteBuffer#get(int)}按limit检查下标
+     *
+     * @param offset 相对缓冲区开头的绝对下标
+     */
+    public static BufferRange of(ByteBuffer buffer, int offset, int length) {
+        if (buffer == null || length == 0) {
+            return NONE;
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset or length is negative.");
+        }
+        if (buffer.limit() < offset || buffer.limit() - offset < length) {
+            throw new IllegalArgumentException("The limit of buffer is not large enough.");
+        }
+        return new BufferRange(buffer, offset, length);
+    }
+
+    /**
+     * 以只读方式映射文件的一个区域
+     */
+    public static BufferRange map(FileChannel channel, long position, int size)
+            throws IOException {
+        return of(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+    }
+
+    /**
+     * 以只读方式映射文件的一个区域，映射建立之后关闭文件不影响访问
+     */
+    public static BufferRange map(Path path, long position, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return map(channel, position, size);
+        }
+    }
+
+    private BufferRange(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public byte byteAt(int i) {
+        return buffer.get(offset + i);
+    }
+
+    @Override
+    public BufferRange subrange(int offset, int newLen) {
+        if (offset + newLen > length) {
+            throw new IllegalArgumentException("The length of data is not long enough.");
+        }
+        if (newLen == 0) {
+            return NONE;
+        }
+        if (offset == 0 && newLen == length) {
+            return this;
+        }
+        return new BufferRange(buffer, this.offset + offset, newLen);
+    }
+
+    @Override
+    public BufferRange subrange(int newLen) {
+        return subrange(0, newLen);
+    }
+
+    @Override
+    public BufferRange jump(int jump) {
+        if (jump < 0 || jump > length) {
+            throw new IllegalArgumentException("Jump out of range(" + jump + ").");
+        }
+        if (jump == 0) {
+            return this;
+        }
+        if (jump == length) {
+            return NONE;
+        }
+        return new BufferRange(buffer, offset + jump, length - jump);
+    }
+
+    @Override
+    public void copyTo(int srcOffset, byte[] dst, int dstOffset, int length) {
+        if (srcOffset < 0 || length < 0 || srcOffset + length > this.length) {
+            throw new IndexOutOfBoundsException("Range [" + srcOffset + ", " + (srcOffset + length)
+                    + ") out of length " + this.length);
+        }
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset + srcOffset, dst,
+                    dstOffset, length);
+            return;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + srcOffset + length).position(offset + srcOffset);
+        view.get(dst, dstOffset, length);
+    }
+
+    @Override
+    public byte[] bytesCopy() {
+        byte[] bytes = new byte[length];
+        copyTo(0, bytes, 0, length);
+        return bytes;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        if (bytes == null) {
+            bytes = bytesCopy();
+        }
+        return bytes;
+    }
+
+    /**
+     * 复制到堆上的{@link BytesRange}
+     */
+    public BytesRange toRange() {
+        return BytesRange.of(getBytes());
+    }
+
+    /**
+     * 本片段的只读视图，position为0，limit为片段长度
+     */
+    public ByteBuffer asBuffer() {
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.limit(offset + length).position(offset);
+        return view.slice();
+    }
+
+    @Override
+    public String getHexStr() {
+        if (hexValue == null) {
+            hexValue = BitUtil.toHexString(this);
+        }
+        return hexValue;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + buffer.get(i);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof BufferRange)) {
+            return false;
+        }
+        BufferRange other = (BufferRange) obj;
+        if (length != other.length) {
+            return false;
+        }
+        if (buffer == other.buffer && offset == other.offset) {
+            return true;
+        }
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        return mismatch(other) < 0;
+    }
+
+    /**
+     * 按无符号字节的字典序比较，结果与hex字符串的顺序一致
+     */
+    @Override
+    public int compareTo(BufferRange other) {
+        int i = mismatch(other);
+        if (i < 0) {
+            return 0;
+        }
+        if (i == Math.min(length, other.length)) {
+            return Integer.compare(length, other.length);
+        }
+        return Integer.compare(byteAt(i) & 0xff, other.byteAt(i) & 0xff);
+    }
+
+    /**
+     * 第一个不相同的字节的下标
+     *
+     * @return 内容相同时返回-1；一个是另一个的前缀时返回较短的长度
+     */
+    public int mismatch(BufferRange other) {
+        return asBuffer().mismatch(other.asBuffer());
+    }
+}
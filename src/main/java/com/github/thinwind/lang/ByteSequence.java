@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.lang;
+
+/**
+ *
+ * 只读的字节序列，底层可以是堆上的数组({@link BytesRange})，也可以是直接内存或者文件映射({@link BufferRange})
+ *
+ * 下标都相对序列的开头，截取子序列不复制数据。
+ * {@link BitUtil}中的hex和字符串转换对所有实现都适用
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-18  14:30
+ *
+ */
+public interface ByteSequence {
+
+    int length();
+
+    byte byteAt(int i);
+
+    /**
+     * 子序列
+     * @param offset 相对本序列开头的偏移量
+     * @param newLen 子序列长度
+     */
+    ByteSequence subrange(int offset, int newLen);
+
+    /**
+     * 从开头截取的子序列
+     */
+    ByteSequence subrange(int newLen);
+
+    /**
+     * 跳过开头的jump个字节之后剩下的序列
+     */
+    ByteSequence jump(int jump);
+
+    /**
+     * 把[srcOffset, srcOffset + length)复制到dst中
+     */
+    void copyTo(int srcOffset, byte[] dst, int dstOffset, int length);
+
+    /**
+     * 复制出的新数组
+     */
+    byte[] bytesCopy();
+
+    /**
+     * 内容对应的数组，可能是缓存的或者底层的数组，不能修改
+     */
+    byte[] getBytes();
+
+    String getHexStr();
+}
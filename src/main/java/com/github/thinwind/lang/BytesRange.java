@@ -3,6 +3,8 @@
  */
 package com.github.thinwind.lang;
 
+import java.util.Arrays;
+
 /**
  *
  * 一个字节数组的片段
@@ -11,14 +13,15 @@ package com.github.thinwind.lang;
  * @since 2022-02-08  10:27
  *
  */
-public class BytesRange {
+public class BytesRange implements ByteSequence, Comparable<BytesRange> {
 
     public static final BytesRange NONE = new BytesRange(new byte[0], 0, 0);
 
     static {
         NONE.hexValue = "";
         NONE.bytes = NONE.data;
-        NONE.hash = -1;
+        //与计算出的空片段的hash一致
+        NONE.hash = 1;
     }
 
     public final byte[] data;
@@ -31,6 +34,7 @@ public class BytesRange {
 
     private String hexValue;
 
+    //0表示还没有计算，内容不可变，多个线程重复计算也没有问题
     private int hash;
 
     public static BytesRange of(byte[] data, int offset, int length) {
@@ -65,26 +69,46 @@ public class BytesRange {
         return range;
     }
 
+    /**
+     * 拼接多个片段
+     * 
+     * 首尾相接的同一数组上的片段直接合并，否则只分配一次，把所有片段复制到新的数组中。
+     * 需要多次拼接时使用{@link BytesRope}，最后再合并
+     */
     public static BytesRange join(BytesRange... ranges) {
-        return join(0, ranges);
-    }
-
-    private static BytesRange join(int start, BytesRange... ranges) {
-        if (ranges == null || ranges.length == 0 || start >= ranges.length) {
+        if (ranges == null || ranges.length == 0) {
             return NONE;
         }
-        if (ranges.length - start == 1) {
-            return ranges[start];
-        }
-        BytesRange acc = ranges[start];
-        for (int i = start + 1; i < ranges.length; i++) {
-            if (acc.data == ranges[i].data) {
-                acc = acc.join(ranges[i]);
+        BytesRange acc = NONE;
+        int total = 0;
+        boolean contiguous = true;
+        for (BytesRange range : ranges) {
+            if (range.length == 0) {
+                continue;
+            }
+            total += range.length;
+            if (total < 0) {
+                throw new IllegalArgumentException("The length of joined data overflows.");
+            }
+            if (acc.length == 0) {
+                acc = range;
+            } else if (contiguous && acc.data == range.data
+                    && acc.offset + acc.length == range.offset) {
+                acc = new BytesRange(acc.data, acc.offset, acc.length + range.length);
             } else {
-                return acc.join(join(i, ranges));
+                contiguous = false;
             }
         }
-        return acc;
+        if (contiguous) {
+            return acc;
+        }
+        byte[] bytes = new byte[total];
+        int pos = 0;
+        for (BytesRange range : ranges) {
+            System.arraycopy(range.data, range.offset, bytes, pos, range.length);
+            pos += range.length;
+        }
+        return new BytesRange(bytes);
     }
 
     private BytesRange(byte[] data, int offset, int length) {
@@ -97,16 +121,33 @@ public class BytesRange {
         this(data, 0, data.length);
     }
 
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public void copyTo(int srcOffset, byte[] dst, int dstOffset, int length) {
+        if (srcOffset < 0 || length < 0 || srcOffset + length > this.length) {
+            throw new IndexOutOfBoundsException("Range [" + srcOffset + ", " + (srcOffset + length)
+                    + ") out of length " + this.length);
+        }
+        System.arraycopy(data, offset + srcOffset, dst, dstOffset, length);
+    }
+
+    @Override
     public byte[] bytesCopy() {
         byte[] bytes = new byte[length];
         System.arraycopy(data, offset, bytes, 0, length);
         return bytes;
     }
 
+    @Override
     public byte byteAt(int i) {
         return data[offset + i];
     }
 
+    @Override
     public byte[] getBytes() {
         if (length == data.length) {
             return data;
@@ -118,6 +159,7 @@ public class BytesRange {
         return bytes;
     }
 
+    @Override
     public BytesRange subrange(int offset, int newLen) {
         if (offset + newLen > length) {
             throw new IllegalArgumentException("The length of data is not long enough.");
@@ -131,6 +173,7 @@ public class BytesRange {
         return new BytesRange(data, this.offset + offset, newLen);
     }
 
+    @Override
     public BytesRange jump(int jump) {
         if (offset + jump < 0 || jump > length) {
             throw new IllegalArgumentException("Jump out of range(" + offset + jump + ").");
@@ -150,6 +193,7 @@ public class BytesRange {
      * @return 新的子序列
      *         与本序列offset相同
      */
+    @Override
     public BytesRange subrange(int newLen) {
         return subrange(0, newLen);
     }
@@ -186,15 +230,15 @@ public class BytesRange {
 
     @Override
     public int hashCode() {
-        if (hash != 0) {
-            return hash;
-        }
-        int hash = 1;
-        for (int i = offset; i < offset + length; i++) {
-            hash = 31 * hash + data[i];
+        int h = hash;
+        if (h == 0) {
+            h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + data[i];
+            }
+            hash = h;
         }
-
-        return hash;
+        return h;
     }
 
     @Override
@@ -215,15 +259,37 @@ public class BytesRange {
         if (data == other.data && offset == other.offset) {
             return true;
         }
+        //两边都算过hash时先比较hash
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        return Arrays.equals(data, offset, offset + length, other.data, other.offset,
+                other.offset + length);
+    }
 
-        for (int i = offset; i < offset + length; i++) {
-            if (data[i] != other.data[i - offset + other.offset]) {
-                return false;
-            }
+    /**
+     * 按无符号字节的字典序比较，结果与hex字符串的顺序一致
+     */
+    @Override
+    public int compareTo(BytesRange other) {
+        if (data == other.data && offset == other.offset) {
+            return Integer.compare(length, other.length);
         }
-        return true;
+        return Arrays.compareUnsigned(data, offset, offset + length, other.data, other.offset,
+                other.offset + other.length);
     }
 
+    /**
+     * 第一个不相同的字节的下标
+     * 
+     * @return 内容相同时返回-1；一个是另一个的前缀时返回较短的长度
+     */
+    public int mismatch(BytesRange other) {
+        return Arrays.mismatch(data, offset, offset + length, other.data, other.offset,
+                other.offset + other.length);
+    }
+
+    @Override
     public String getHexStr() {
         if (hexValue == null) {
             hexValue = BitUtil.toHexString(this);
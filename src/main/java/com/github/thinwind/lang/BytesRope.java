@@ -0,0 +1,304 @@
+/*
+ * Copyright 2022 Shang Yehua <niceshang@outlook.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.thinwind.lang;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * 由多个{@link BytesRange}拼接成的字节序列，拼接时只保存片段的引用，不复制数据
+ *
+ * 片段数组在多个rope之间共享，每个rope只使用其中的前count个。
+ * 在最新的rope后面拼接是在原地追加，均摊O(1)；在旧的rope后面拼接会复制片段的引用。
+ * {@link #byteAt(int)}按片段的累计长度二分查找，{@link #getBytes()}第一次调用时才把数据复制到一起。
+ * 实现了{@link ByteSequence}，可以不合并直接交给{@link BitUtil}转换，截取子序列只截取涉及的片段。
+ *
+ * 内容不可变，可以在线程之间共享
+ *
+ * @author Shang Yehua <niceshang@outlook.com>
+ * @since 2022-07-16  10:15
+ *
+ */
+public final class BytesRope implements ByteSequence {
+
+    public static final BytesRope EMPTY =
+            new BytesRope(new BytesRange[0], new int[0], 0, new AtomicInteger());
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final BytesRange[] ranges;
+
+    //ends[i]是前i+1个片段的总长度
+    private final int[] ends;
+
+    private final int count;
+
+    //片段数组已经被使用的个数，只有count与之相等的rope可以原地追加
+    private final AtomicInteger used;
+
+    private BytesRange flat;
+
+    private int hash;
+
+    public static BytesRope of(BytesRange... ranges) {
+        BytesRope rope = EMPTY;
+        if (ranges == null) {
+            return rope;
+        }
+        for (BytesRange range : ranges) {
+            rope = rope.join(range);
+        }
+        return rope;
+    }
+
+    private BytesRope(BytesRange[] ranges, int[] ends, int count, AtomicInteger used) {
+        this.ranges = ranges;
+        this.ends = ends;
+        this.count = count;
+        this.used = used;
+    }
+
+    @Override
+    public int length() {
+        return count == 0 ? 0 : ends[count - 1];
+    }
+
+    /**
+     * 片段的个数，空片段不计入
+     */
+    public int segmentCount() {
+        return count;
+    }
+
+    @Override
+    public byte byteAt(int i) {
+        if (i < 0 || i >= length()) {
+            throw new IndexOutOfBoundsException("Index [" + i + "] out of length " + length());
+        }
+        BytesRange f = flat;
+        if (f != null) {
+            return f.byteAt(i);
+        }
+        int segment = segmentOf(i);
+        return ranges[segment].byteAt(i - start(segment));
+    }
+
+    @Override
+    public BytesRope subrange(int offset, int newLen) {
+        int length = length();
+        if (offset < 0 || newLen < 0 || offset + newLen > length) {
+            throw new IllegalArgumentException("The length of data is not long enough.");
+        }
+        if (newLen == 0) {
+            return EMPTY;
+        }
+        if (offset == 0 && newLen == length) {
+            return this;
+        }
+        int end = offset + newLen;
+        BytesRope rope = EMPTY;
+        for (int i = segmentOf(offset); i < count && start(i) < end; i++) {
+            int from = Math.max(offset, start(i)) - start(i);
+            int to = Math.min(end, ends[i]) - start(i);
+            rope = rope.join(ranges[i].subrange(from, to - from));
+        }
+        return rope;
+    }
+
+    @Override
+    public BytesRope subrange(int newLen) {
+        return subrange(0, newLen);
+    }
+
+    @Override
+    public BytesRope jump(int jump) {
+        if (jump < 0 || jump > length()) {
+            throw new IllegalArgumentException("Jump out of range(" + jump + ").");
+        }
+        return subrange(jump, length() - jump);
+    }
+
+    /**
+     * 按片段逐段复制
+     */
+    @Override
+    public void copyTo(int srcOffset, byte[] dst, int dstOffset, int length) {
+        if (srcOffset < 0 || length < 0 || srcOffset + length > length()) {
+            throw new IndexOutOfBoundsException("Range [" + srcOffset + ", " + (srcOffset + length)
+                    + ") out of length " + length());
+        }
+        int end = srcOffset + length;
+        int pos = srcOffset;
+        for (int i = segmentOf(srcOffset); pos < end; i++) {
+            BytesRange range = ranges[i];
+            int n = Math.min(ends[i], end) - pos;
+            System.arraycopy(range.data, range.offset + pos - start(i), dst, dstOffset, n);
+            pos += n;
+            dstOffset += n;
+        }
+    }
+
+    @Override
+    public byte[] bytesCopy() {
+        byte[] bytes = new byte[length()];
+        copyTo(0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    public BytesRope join(BytesRange range) {
+        if (range == null || range.length == 0) {
+            return this;
+        }
+        int end = length() + range.length;
+        if (end < 0) {
+            throw new IllegalArgumentException("The length of rope overflows.");
+        }
+        if (count < ranges.length && used.compareAndSet(count, count + 1)) {
+            //后面的位置不属于任何已有的rope
+            ranges[count] = range;
+            ends[count] = end;
+            return new BytesRope(ranges, ends, count + 1, used);
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, count * 2);
+        BytesRange[] newRanges = Arrays.copyOf(ranges, capacity);
+        int[] newEnds = Arrays.copyOf(ends, capacity);
+        newRanges[count] = range;
+        newEnds[count] = end;
+        return new BytesRope(newRanges, newEnds, count + 1, new AtomicInteger(count + 1));
+    }
+
+    public BytesRope join(BytesRope other) {
+        if (count == 0) {
+            return other;
+        }
+        BytesRope rope = this;
+        for (int i = 0; i < other.count; i++) {
+            rope = rope.join(other.ranges[i]);
+        }
+        return rope;
+    }
+
+    /**
+     * 合并成一个连续的片段，只有一个片段时直接返回它，否则复制一次并缓存结果
+     */
+    public BytesRange toRange() {
+        if (count == 0) {
+            return BytesRange.NONE;
+        }
+        if (count == 1) {
+            return ranges[0];
+        }
+        BytesRange f = flat;
+        if (f == null) {
+            f = BytesRange.of(bytesCopy());
+            flat = f;
+        }
+        return f;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return toRange().getBytes();
+    }
+
+    @Override
+    public String getHexStr() {
+        return toRange().getHexStr();
+    }
+
+    /**
+     * 与内容相同的{@link BytesRange}的hash相同
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 1;
+            for (int i = 0; i < count; i++) {
+                BytesRange range = ranges[i];
+                for (int j = range.offset; j < range.offset + range.length; j++) {
+                    h = 31 * h + range.data[j];
+                }
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * 按内容比较，不合并片段
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof BytesRope)) {
+            return false;
+        }
+        BytesRope other = (BytesRope) obj;
+        if (length() != other.length()) {
+            return false;
+        }
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        //两边的片段边界不同，每次比较到较近的边界为止
+        int i = 0;
+        int j = 0;
+        int pos = 0;
+        int length = length();
+        while (pos < length) {
+            BytesRange a = ranges[i];
+            BytesRange b = other.ranges[j];
+            int aFrom = pos - start(i);
+            int bFrom = pos - other.start(j);
+            int n = Math.min(a.length - aFrom, b.length - bFrom);
+            if (!Arrays.equals(a.data, a.offset + aFrom, a.offset + aFrom + n, b.data,
+                    b.offset + bFrom, b.offset + bFrom + n)) {
+                return false;
+            }
+            pos += n;
+            if (pos == ends[i]) {
+                i++;
+            }
+            if (pos == other.ends[j]) {
+                j++;
+            }
+        }
+        return true;
+    }
+
+    private int start(int segment) {
+        return segment == 0 ? 0 : ends[segment - 1];
+    }
+
+    /**
+     * 第一个累计长度大于i的片段
+     */
+    private int segmentOf(int i) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= i) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
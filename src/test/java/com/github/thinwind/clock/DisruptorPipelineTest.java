@@ -0,0 +1,73 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * DisruptorPipeline测试
+ */
+public class DisruptorPipelineTest {
+
+    @Test
+    public void chainedHandlersSeeEveryEvent() throws InterruptedException {
+        int total = 1000;
+        AtomicLong first = new AtomicLong();
+        AtomicLong second = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(total);
+        DisruptorPipeline<Integer> pipeline = new DisruptorPipeline<>(64);
+        pipeline.handleEventsWith((e, seq, end) -> first.addAndGet(e.get()))
+                .then((e, seq, end) -> {
+                    second.addAndGet(e.get());
+                    done.countDown();
+                });
+        pipeline.start();
+
+        EventRing<Integer> ring = new EventRing<>(8, 16);
+        for (int i = 1; i <= total; i++) {
+            ring.put(1, i);
+            ring.comsume(pipeline);
+        }
+        done.await(10, TimeUnit.SECONDS);
+        pipeline.shutdown();
+        assertEquals(total * (total + 1L) / 2, first.get());
+        assertEquals(first.get(), second.get());
+    }
+
+    @Test
+    public void holdersAreClearedAfterTheLastStage() throws InterruptedException {
+        int total = 100;
+        Set<ExpiredEvent<Object>> holders =
+                Collections.newSetFromMap(new IdentityHashMap<ExpiredEvent<Object>, Boolean>());
+        AtomicLong lastStage = new AtomicLong();
+        DisruptorPipeline<Object> pipeline = new DisruptorPipeline<>(16);
+        pipeline.handleEventsWith((e, seq, end) -> {
+            synchronized (holders) {
+                holders.add(e);
+            }
+        }).then((e, seq, end) -> {
+            //最后一个阶段处理时事件还在
+            if (e.get() != null) {
+                lastStage.incrementAndGet();
+            }
+        });
+        pipeline.start();
+        for (int i = 0; i < total; i++) {
+            pipeline.accept(new Object());
+        }
+        pipeline.shutdown();
+        assertEquals(total, lastStage.get());
+        assertEquals(16, holders.size());
+        for (ExpiredEvent<Object> holder : holders) {
+            assertNull(holder.get());
+        }
+    }
+}
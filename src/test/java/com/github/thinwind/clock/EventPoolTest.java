@@ -0,0 +1,75 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+/**
+ * EventPool测试
+ */
+public class EventPoolTest {
+
+    static final class Task implements Clearable {
+
+        String payload;
+
+        @Override
+        public void clear() {
+            payload = null;
+        }
+    }
+
+    @Test
+    public void consumedEventsAreClearedAndReused() {
+        EventPool<Task> pool = new EventPool<>(2, 4, Task::new);
+        EventRing<Task> ring = new EventRing<>(8, 4);
+        StringBuilder seen = new StringBuilder();
+        Consumer<Task> handler = pool.recycling(t -> seen.append(t.payload));
+
+        Task first = pool.acquire();
+        first.payload = "a";
+        ring.put(1, first);
+        ring.comsume(handler);
+        assertEquals("a", seen.toString());
+        assertNull(first.payload);
+
+        Task second = pool.acquire();
+        assertSame(first, second);
+        assertEquals(1, pool.createdCount());
+    }
+
+    @Test
+    public void drainedPoolCreatesAndFullPoolDrops() {
+        EventPool<Task> pool = new EventPool<>(1, 4, Task::new);
+        Set<Task> tasks = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+        for (int i = 0; i < 6; i++) {
+            tasks.add(pool.acquire());
+        }
+        assertEquals(6, pool.createdCount());
+        for (Task task : tasks) {
+            pool.release(task);
+        }
+        //只放得下4个
+        assertEquals(2, pool.droppedCount());
+
+        Set<Task> reused = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+        for (int i = 0; i < 4; i++) {
+            reused.add(pool.acquire());
+        }
+        assertEquals(4, reused.size());
+        assertTrue(tasks.containsAll(reused));
+        assertEquals(6, pool.createdCount());
+        //取空之后新建
+        assertFalse(tasks.contains(pool.acquire()));
+        assertEquals(7, pool.createdCount());
+    }
+}
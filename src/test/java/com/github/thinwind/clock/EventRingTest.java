@@ -0,0 +1,661 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * EventRing测试
+ */
+public class EventRingTest {
+
+    @Test
+    public void eventFiresAfterPosConsumes() {
+        EventRing<Integer> ring = new EventRing<>(8, 4);
+        List<Integer> fired = new ArrayList<>();
+        ring.put(3, 3);
+        ring.put(0, 1);
+        ring.comsume(fired::add);
+        assertEquals(1, fired.size());
+        ring.comsume(fired::add);
+        assertEquals(1, fired.size());
+        ring.comsume(fired::add);
+        assertEquals(2, fired.size());
+        assertEquals(Integer.valueOf(1), fired.get(0));
+        assertEquals(Integer.valueOf(3), fired.get(1));
+    }
+
+    @Test
+    public void wrapsAroundRing() {
+        EventRing<Integer> ring = new EventRing<>(4, 4);
+        List<Integer> fired = new ArrayList<>();
+        for (int round = 0; round < 10; round++) {
+            ring.put(3, round);
+            ring.comsume(fired::add);
+            ring.comsume(fired::add);
+            ring.comsume(fired::add);
+        }
+        assertEquals(10, fired.size());
+    }
+
+    @Test
+    public void concurrentProducersWithEachWaitStrategy() throws InterruptedException {
+        WaitStrategy[] strategies = {new BusySpinWaitStrategy(), new YieldingWaitStrategy(),
+                new SleepingWaitStrategy(), new BlockingWaitStrategy()};
+        for (WaitStrategy strategy : strategies) {
+            EventRing<Integer> ring = new EventRing<>(16, 8, strategy);
+            int producers = 4;
+            int perProducer = 20_000;
+            CountDownLatch done = new CountDownLatch(producers);
+            for (int p = 0; p < producers; p++) {
+                new Thread(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        ring.put(1 + i % 15, i);
+                    }
+                    done.countDown();
+                }).start();
+            }
+            AtomicLong count = new AtomicLong();
+            while (done.getCount() > 0) {
+                ring.comsume(i -> count.incrementAndGet());
+            }
+            for (int i = 0; i < 16; i++) {
+                ring.comsume(e -> count.incrementAndGet());
+            }
+            assertEquals(strategy.getClass().getSimpleName(), producers * perProducer,
+                    count.get());
+        }
+    }
+
+    @Test
+    public void cancelledEventsAreSkipped() {
+        EventRing<Integer> ring = new EventRing<>(8, 4);
+        EventHandle<Integer> first = ring.putCancellable(2, 1);
+        EventHandle<Integer> second = ring.putCancellable(2, 2);
+        ring.put(2, 3);
+        assertEquals(3, ring.pendingCount());
+
+        assertTrue(first.cancel());
+        assertFalse(first.cancel());
+        assertNull(first.event());
+        assertEquals(2, ring.pendingCount());
+        assertEquals(1, ring.cancelledCount());
+
+        List<Integer> fired = new ArrayList<>();
+        ring.comsume(fired::add);
+        ring.comsume(fired::add);
+        assertEquals(2, fired.size());
+        assertEquals(Integer.valueOf(2), fired.get(0));
+        assertTrue(second.isExpired());
+        assertFalse(second.cancel());
+        assertEquals(0, ring.pendingCount());
+        assertEquals(0, ring.cancelledCount());
+    }
+
+    @Test
+    public void putAllAndBatch() {
+        EventRing<Integer> ring = new EventRing<>(8, 2);
+        ring.putAll(1, new Integer[] {1, 2, 3, 4, 5});
+        ring.putAll(2, Arrays.asList(6, 7));
+        EventBatch<Integer> batch = ring.batch();
+        batch.add(2, 8).add(1, 9).add(2, 10);
+        assertEquals(3, batch.size());
+        batch.flush();
+        assertEquals(0, batch.size());
+        assertEquals(10, ring.pendingCount());
+
+        List<Integer> fired = new ArrayList<>();
+        ring.comsume(fired::add);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 9), fired);
+        fired.clear();
+        ring.comsume(fired::add);
+        assertEquals(Arrays.asList(6, 7, 8, 10), fired);
+    }
+
+    @Test
+    public void longRingDeliversPrimitives() {
+        LongEventRing ring = new LongEventRing(8, 2);
+        ring.put(2, 42L);
+        ring.putAll(2, new long[] {1L, 2L, 3L});
+        ring.put(1, 7L);
+        assertEquals(5, ring.pendingCount());
+        long[] sum = {0};
+        ring.comsume(v -> sum[0] += v);
+        assertEquals(7L, sum[0]);
+        ring.comsume(v -> sum[0] += v);
+        assertEquals(55L, sum[0]);
+        assertEquals(0, ring.pendingCount());
+    }
+
+    @Test
+    public void recordsMetrics() throws Exception {
+        RingMetrics metrics = new RingMetrics(true);
+        EventRing<Integer> ring = new EventRing<>(8, 4, new YieldingWaitStrategy(), metrics);
+        ring.put(1, 1);
+        ring.putAll(1, new Integer[] {2, 3});
+        ring.put(2, 4);
+        assertEquals(3, ring.occupancy()[1]);
+        ring.comsume(e -> {
+        });
+        ring.comsume(e -> {
+        });
+        RingMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(4, snapshot.putCount);
+        assertEquals(2, snapshot.drainCount);
+        assertEquals(4, snapshot.drainedEvents);
+        assertEquals(3, snapshot.maxOccupancy);
+        assertEquals(3, metrics.slotHighWater(1));
+        assertEquals(2, metrics.drainHistogram().count());
+        assertEquals(-1, snapshot.maxTickLagNanos);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.registerMBean("test");
+        assertEquals(4L, server.getAttribute(name, "PutCount"));
+        server.unregisterMBean(name);
+    }
+
+    @Test
+    public void scheduleRoundsDeadlineToTicks() {
+        EventRing<Integer> ring = new EventRing<>(16, 4, 1, TimeUnit.SECONDS);
+        assertEquals(3, ring.schedule(1, 2600, TimeUnit.MILLISECONDS));
+        assertEquals(3, ring.schedule(2, 2600, TimeUnit.MILLISECONDS, TickRounding.NEAREST));
+        assertEquals(2, ring.schedule(3, 2400, TimeUnit.MILLISECONDS, TickRounding.NEAREST));
+        assertEquals(2, ring.schedule(4, 2900, TimeUnit.MILLISECONDS, TickRounding.DOWN));
+        //已经过去的截止时间放入下一个待消费的tick
+        assertEquals(1, ring.schedule(5, System.nanoTime() - TimeUnit.SECONDS.toNanos(10)));
+        assertEquals(1, ring.schedule(6, 500, TimeUnit.MILLISECONDS, TickRounding.DOWN));
+        List<Integer> fired = new ArrayList<>();
+        ring.comsume(fired::add);
+        assertEquals(Arrays.asList(5, 6), fired);
+        ring.comsume(fired::add);
+        assertEquals(Arrays.asList(5, 6, 3, 4), fired);
+        ring.comsume(fired::add);
+        assertEquals(Arrays.asList(5, 6, 3, 4, 1, 2), fired);
+        assertEquals(4, ring.schedule(7, 0, TimeUnit.SECONDS, TickRounding.DOWN));
+    }
+
+    @Test
+    public void scheduleRejectsDelayBeyondRing() {
+        EventRing<Integer> ring = new EventRing<>(16, 4, 1, TimeUnit.SECONDS);
+        try {
+            ring.schedule(1, 16, TimeUnit.SECONDS);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new EventRing<Integer>(16, 4).schedule(1, 1, TimeUnit.SECONDS);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void driverFiresScheduledEventsAfterDeadline() throws InterruptedException {
+        EventRing<Long> ring = new EventRing<>(64, 4, 1, TimeUnit.MILLISECONDS);
+        CountDownLatch latch = new CountDownLatch(3);
+        AtomicLong early = new AtomicLong();
+        TickDriver driver = ring.driver(deadline -> {
+            if (System.nanoTime() < deadline) {
+                early.incrementAndGet();
+            }
+            latch.countDown();
+        });
+        driver.start();
+        try {
+            for (long delay : new long[] {5, 20, 40}) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+                ring.schedule(deadline, deadline);
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, early.get());
+        } finally {
+            driver.stop();
+        }
+    }
+
+    @Test
+    public void scheduleWhileConsumerLagsClock() throws InterruptedException {
+        EventRing<String> ring = new EventRing<>(64, 4, 1, TimeUnit.MILLISECONDS);
+        //没有驱动器，cursor停在0，时钟已经超过一圈
+        Thread.sleep(100);
+        long delayed = ring.schedule("delayed", 10, TimeUnit.MILLISECONDS);
+        long keyed = ring.scheduleKeyed(1, "keyed", 10, TimeUnit.MILLISECONDS);
+        RecurringHandle<String> rate =
+                ring.scheduleAtFixedRate("rate", 10, 10, TimeUnit.MILLISECONDS);
+        long first = rate.tick();
+        assertTrue(delayed > 100);
+        assertTrue(keyed > 100);
+        assertTrue(first > 100);
+        List<String> fired = new ArrayList<>();
+        List<Long> ticks = new ArrayList<>();
+        while (ring.cursor() < first) {
+            ring.comsume(e -> {
+                fired.add(e);
+                ticks.add(ring.cursor());
+            });
+        }
+        rate.cancel();
+        assertEquals(3, fired.size());
+        assertEquals(Long.valueOf(delayed), ticks.get(fired.indexOf("delayed")));
+        assertEquals(Long.valueOf(keyed), ticks.get(fired.indexOf("keyed")));
+        assertEquals(Long.valueOf(first), ticks.get(fired.indexOf("rate")));
+        assertEquals(0, ring.keyedCount());
+    }
+
+    @Test
+    public void recurringEventsAreReinsertedUntilCancelled() {
+        EventRing<String> ring = new EventRing<>(4, 4);
+        RecurringHandle<String> rate = ring.scheduleAtFixedRate("rate", 1, 2);
+        RecurringHandle<String> lap = ring.scheduleWithFixedDelay("lap", 3, 4);
+        List<Long> rateTicks = new ArrayList<>();
+        List<Long> lapTicks = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            ring.comsume(e -> ("rate".equals(e) ? rateTicks : lapTicks).add(ring.cursor()));
+            if (i == 6) {
+                assertTrue(rate.cancel());
+            }
+        }
+        assertEquals(Arrays.asList(1L, 3L, 5L, 7L), rateTicks);
+        assertEquals(Arrays.asList(3L, 7L, 11L), lapTicks);
+        assertEquals(4, rate.fireCount());
+        assertFalse(rate.cancel());
+        assertEquals(1, ring.pendingCount());
+        assertEquals(0, ring.cancelledCount());
+        assertEquals(15, lap.tick());
+    }
+
+    @Test
+    public void fixedRateDoesNotAccumulateRoundingError() {
+        EventRing<Integer> ring = new EventRing<>(8, 4, 1, TimeUnit.SECONDS);
+        ring.scheduleAtFixedRate(1, 0, 1500, TimeUnit.MILLISECONDS);
+        List<Long> ticks = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ring.comsume(e -> ticks.add(ring.cursor()));
+        }
+        assertEquals(Arrays.asList(1L, 2L, 4L, 5L, 7L), ticks);
+    }
+
+    @Test
+    public void failedRecurringEventStops() {
+        EventRing<Integer> ring = new EventRing<>(4, 4);
+        RecurringHandle<Integer> handle = ring.scheduleAtFixedRate(1, 1, 1);
+        try {
+            ring.comsume(e -> {
+                throw new IllegalStateException();
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(handle.isFailed());
+        assertEquals(0, ring.pendingCount());
+    }
+
+    @Test
+    public void spillCountsEventsBeyondFirstChunk() {
+        SpillOverflowPolicy spill = new SpillOverflowPolicy();
+        EventRing<Integer> ring = new EventRing<>(4, 2, new YieldingWaitStrategy(), null, spill);
+        ring.putAll(1, new Integer[] {1, 2, 3});
+        ring.put(1, 4);
+        assertEquals(2, spill.spilledCount());
+        assertEquals(0, spill.overflowCount());
+    }
+
+    @Test
+    public void shiftMovesEventsToNextSlotWithRoom() {
+        ShiftOverflowPolicy shift = new ShiftOverflowPolicy(2);
+        EventRing<Integer> ring = new EventRing<>(4, 2, new YieldingWaitStrategy(), null, shift);
+        for (int i = 0; i < 4; i++) {
+            ring.put(2, i);
+        }
+        //顺延不能超出环的范围
+        try {
+            ring.put(2, 4);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(1, shift.rejectedCount());
+        List<Integer> fired = new ArrayList<>();
+        ring.comsume(fired::add);
+        assertTrue(fired.isEmpty());
+        ring.comsume(fired::add);
+        assertEquals(Arrays.asList(0, 1), fired);
+        ring.comsume(fired::add);
+        assertEquals(Arrays.asList(0, 1, 2, 3), fired);
+        assertEquals(4, shift.overflowCount());
+        assertEquals(0, ring.pendingCount());
+    }
+
+    @Test
+    public void rejectHandsEventToCallback() {
+        List<Object> rejected = new ArrayList<>();
+        RejectingOverflowPolicy reject = new RejectingOverflowPolicy(1, rejected::add);
+        EventRing<Integer> ring = new EventRing<>(4, 2, new YieldingWaitStrategy(), null, reject);
+        assertTrue(ring.tryPut(1, 1));
+        assertFalse(ring.tryPut(1, 2));
+        ring.put(1, 3);
+        assertNull(ring.putCancellable(1, 4));
+        assertEquals(Arrays.asList(2, 3, 4), rejected);
+        assertEquals(3, reject.rejectedCount());
+        assertEquals(1, ring.pendingCount());
+    }
+
+    @Test
+    public void blockWaitsForConsumer() throws InterruptedException {
+        BlockingOverflowPolicy block = new BlockingOverflowPolicy(1, 10, TimeUnit.MILLISECONDS);
+        EventRing<Integer> ring = new EventRing<>(4, 2, new YieldingWaitStrategy(), null, block);
+        ring.put(1, 1);
+        long start = System.nanoTime();
+        assertFalse(ring.tryPut(1, 2));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(10));
+
+        BlockingOverflowPolicy patient = new BlockingOverflowPolicy(1, 10, TimeUnit.SECONDS);
+        EventRing<Integer> other = new EventRing<>(4, 2, new YieldingWaitStrategy(), null, patient);
+        other.put(1, 1);
+        Thread producer = new Thread(() -> other.put(1, 2));
+        producer.start();
+        while (patient.overflowCount() == 0) {
+            Thread.yield();
+        }
+        List<Integer> fired = new ArrayList<>();
+        other.comsume(fired::add);
+        producer.join();
+        other.comsume(fired::add);
+        assertEquals(Arrays.asList(1, 2), fired);
+    }
+
+    @Test
+    public void occupancyMapScansAcrossWords() {
+        OccupancyMap map = new OccupancyMap(256);
+        assertEquals(-1, map.next(0, 256));
+        map.set(3);
+        map.set(200);
+        assertEquals(3, map.next(0, 256));
+        assertEquals(200, map.next(4, 252));
+        assertEquals(3, map.next(201, 100));
+        assertEquals(-1, map.next(201, 50));
+        assertTrue(map.clear(200));
+        assertFalse(map.clear(200));
+        assertEquals(3, map.next(4, 256));
+    }
+
+    @Test
+    public void nextOccupiedFindsFirstNonEmptyTick() {
+        EventRing<Integer> ring = new EventRing<>(128, 4);
+        assertEquals(127, ring.nextOccupied(0));
+        ring.put(90, 1);
+        ring.put(100, 2);
+        assertEquals(90, ring.nextOccupied(0));
+        for (int i = 0; i < 95; i++) {
+            ring.comsume(e -> {
+            });
+        }
+        assertEquals(100, ring.nextOccupied(95));
+        //跨过数组末尾
+        ring.put(60, 3);
+        assertEquals(100, ring.nextOccupied(95));
+        for (int i = 0; i < 10; i++) {
+            ring.comsume(e -> {
+            });
+        }
+        assertEquals(155, ring.nextOccupied(105));
+    }
+
+    @Test
+    public void idleDriverSleepsUntilNextEvent() throws InterruptedException {
+        EventRing<Long> ring = new EventRing<>(1024, 4, 1, TimeUnit.MILLISECONDS);
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        TickDriver driver = ring.driver(e -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        });
+        driver.start();
+        try {
+            Thread.sleep(50);
+            //没有事件时不会逐个tick醒来
+            assertEquals(0, driver.currentTick());
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+            ring.schedule(deadline, deadline);
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            assertTrue(firedAt.get() >= deadline);
+            assertTrue(ring.cursor() >= 60);
+        } finally {
+            driver.stop();
+        }
+    }
+
+    @Test
+    public void relativePutsAfterIdleCountFromTheClock() throws InterruptedException {
+        EventRing<Integer> ring = new EventRing<>(256, 16, 1, TimeUnit.MILLISECONDS);
+        long[] firedAt = new long[7];
+        CountDownLatch fired = new CountDownLatch(firedAt.length);
+        TickDriver driver = ring.driver(e -> {
+            if (firedAt[e] == 0) {
+                firedAt[e] = System.nanoTime();
+                fired.countDown();
+            }
+        });
+        driver.start();
+        try {
+            //空闲期间cursor停在原处
+            Thread.sleep(150);
+            long before = System.nanoTime();
+            ring.put(100, 0);
+            ring.putCancellable(100, 1);
+            ring.putAll(100, new Integer[] {2});
+            ring.batch().add(100, 3).flush();
+            ring.putKeyed(7, 100, 4);
+            RecurringHandle<Integer> recurring = ring.scheduleAtFixedRate(5, 100, 256);
+            //按时钟算起已经超出环的范围
+            ring.put(200, 6);
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            recurring.cancel();
+            for (int i = 0; i < firedAt.length; i++) {
+                long pos = i == 6 ? 200 : 100;
+                assertTrue("event " + i,
+                        firedAt[i] - before >= TimeUnit.MILLISECONDS.toNanos(pos - 1));
+            }
+        } finally {
+            driver.stop();
+        }
+    }
+
+    @Test
+    public void longKeyIndexSurvivesRemovals() {
+        LongKeyIndex<String> index = new LongKeyIndex<>(4);
+        for (long k = 0; k < 1000; k++) {
+            assertNull(index.put(k * 1024, "v" + k));
+        }
+        for (long k = 0; k < 1000; k += 2) {
+            assertEquals("v" + k, index.remove(k * 1024));
+        }
+        assertEquals(500, index.size());
+        for (long k = 0; k < 1000; k++) {
+            assertEquals(k % 2 == 0 ? null : "v" + k, index.get(k * 1024));
+        }
+        assertEquals("v1", index.put(1024, "w"));
+        assertEquals("w", index.get(1024));
+    }
+
+    @Test
+    public void keyedEventsKeepOnlyLatest() {
+        EventRing<String> ring = new EventRing<>(64, 4);
+        //反复推迟只占用一个位置
+        for (int i = 0; i < 1000; i++) {
+            ring.putKeyed(7, 5 + i % 20, "idle-" + i);
+        }
+        assertEquals(1, Arrays.stream(ring.occupancy()).sum());
+        //提前会留下一个旧副本，被消费时丢弃
+        ring.putKeyed(8, 20, "late");
+        ring.putKeyed(8, 3, "early");
+        ring.putKeyed(9, 4, "cancelled");
+        assertTrue(ring.cancelKey(9));
+        assertFalse(ring.cancelKey(9));
+        assertEquals(2, ring.keyedCount());
+        assertEquals(2, ring.pendingCount());
+        List<String> fired = new ArrayList<>();
+        List<Long> ticks = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ring.comsume(e -> {
+                fired.add(e);
+                ticks.add(ring.cursor());
+            });
+        }
+        assertEquals(Arrays.asList("early", "idle-999"), fired);
+        assertEquals(Arrays.asList(3L, 24L), ticks);
+        assertEquals(0, ring.keyedCount());
+        assertEquals(0, ring.pendingCount());
+        assertEquals(0, ring.cancelledCount());
+    }
+
+    @Test
+    public void advanceToDrainsDueSlotsInBatches() {
+        EventRing<Integer> ring = new EventRing<>(64, 4);
+        for (int i = 0; i < 3000; i++) {
+            ring.put(2, i);
+        }
+        ring.put(1, -1);
+        ring.put(40, -40);
+        List<Integer> sizes = new ArrayList<>();
+        List<Integer> fired = new ArrayList<>();
+        assertEquals(10, ring.advanceTo(10, events -> {
+            sizes.add(events.size());
+            fired.addAll(events);
+        }));
+        int batch = EventRing.MAX_BATCH;
+        assertEquals(Arrays.asList(batch, batch, 3001 - 2 * batch), sizes);
+        assertEquals(Integer.valueOf(-1), fired.get(0));
+        assertEquals(Integer.valueOf(2999), fired.get(3000));
+        assertEquals(10, ring.cursor());
+        assertEquals(1, ring.pendingCount());
+        assertEquals(0, ring.advanceTo(5, events -> fail()));
+
+        //落后超过一圈，之后放入的事件落在新位置之后
+        fired.clear();
+        assertEquals(190, ring.advanceTo(200, fired::addAll));
+        assertEquals(Arrays.asList(-40), fired);
+        ring.put(1, 201);
+        fired.clear();
+        ring.comsume(fired::add);
+        assertEquals(Arrays.asList(201), fired);
+        assertEquals(0, ring.pendingCount());
+    }
+
+    @Test
+    public void advanceToFiresRecurringAndPostponedKeysInOrder() {
+        EventRing<String> ring = new EventRing<>(16, 4);
+        ring.putKeyed(1, 2, "a");
+        ring.putKeyed(1, 12, "b");
+        ring.putKeyed(2, 3, "c");
+        ring.putKeyed(2, 6, "d");
+        RecurringHandle<String> every = ring.scheduleAtFixedRate("r", 1, 4);
+        List<String> fired = new ArrayList<>();
+        ring.advanceTo(8, fired::addAll);
+        assertEquals(Arrays.asList("r", "r", "d"), fired);
+        assertEquals(1, ring.keyedCount());
+        fired.clear();
+        ring.advanceTo(12, fired::addAll);
+        assertEquals(Arrays.asList("r", "b"), fired);
+        assertEquals(0, ring.keyedCount());
+        assertEquals(3, every.fireCount());
+        every.cancel();
+        ring.advanceTo(30, events -> fail());
+        assertEquals(0, ring.pendingCount());
+        assertEquals(0, ring.cancelledCount());
+    }
+
+    @Test
+    public void advanceToNeverFiresBeforeTickWithConcurrentProducer() throws InterruptedException {
+        EventRing<Long> ring = new EventRing<>(64, 4);
+        int total = 200_000;
+        CountDownLatch done = new CountDownLatch(1);
+        new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                int pos = 1 + i % 63;
+                //cursor只增不减，事件所在的tick不早于这个值
+                ring.put(pos, ring.cursor() + pos);
+            }
+            done.countDown();
+        }).start();
+        AtomicLong early = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        long target = 0;
+        while (done.getCount() > 0 || count.get() < total) {
+            target += 40;
+            final long now = target;
+            ring.advanceTo(target, events -> {
+                for (Long due : events) {
+                    if (due > now) {
+                        early.incrementAndGet();
+                    }
+                }
+                count.addAndGet(events.size());
+            });
+        }
+        assertEquals(0, early.get());
+        assertEquals(total, count.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPosOutOfRing() {
+        new EventRing<Integer>(4, 4).put(4, 1);
+    }
+
+    @Test
+    public void hierarchicalRingFiresOnTime() {
+        HierarchicalEventRing<Long> wheel = new HierarchicalEventRing<>(8, 64, 3);
+        assertEquals(7L * 64, wheel.maxDelay());
+        long[] delays = {1, 5, 7, 8, 9, 63, 64, 65, 100, 200, 447, 448};
+        for (long delay : delays) {
+            wheel.put(delay, delay);
+        }
+        List<Long> fired = new ArrayList<>();
+        for (long tick = 1; tick <= 448; tick++) {
+            final long now = tick;
+            wheel.comsume(d -> {
+                assertEquals(now, d.longValue());
+                fired.add(d);
+            });
+        }
+        assertEquals(delays.length, fired.size());
+    }
+
+    @Test
+    public void hierarchicalRingFromNonZeroCursor() {
+        HierarchicalEventRing<Long> wheel = new HierarchicalEventRing<>(4, 64, 3);
+        List<Long> expected = new ArrayList<>();
+        List<Long> fired = new ArrayList<>();
+        //事件的内容是它应该被消费的tick，放完之后继续消费到全部到期
+        for (long tick = 1; tick <= 200 + wheel.maxDelay(); tick++) {
+            if (tick <= 200) {
+                long delay = (tick * 7) % wheel.maxDelay() + 1;
+                wheel.put(delay, tick - 1 + delay);
+                expected.add(tick - 1 + delay);
+            }
+            final long now = tick;
+            wheel.comsume(d -> {
+                assertEquals(now, d.longValue());
+                fired.add(d);
+            });
+        }
+        //消费时已经检查过tick，按tick排序后每个事件恰好出现一次
+        Collections.sort(expected);
+        assertEquals(expected, fired);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * EventSlot测试
+ */
+public class EventSlotTest {
+
+    @Test
+    public void growsBeyondInitialSize() {
+        EventSlot<Integer> slot = new EventSlot<>(3);
+        for (int i = 0; i < 100; i++) {
+            slot.add(i);
+        }
+        assertEquals(100, slot.size());
+        int[] expected = {0};
+        slot.consume(i -> assertEquals(expected[0]++, i.intValue()));
+        assertEquals(100, expected[0]);
+        assertEquals(0, slot.size());
+
+        slot.add(7);
+        slot.consume(i -> assertEquals(7, i.intValue()));
+    }
+
+    @Test
+    public void tryAddRespectsLimit() {
+        EventSlot<Integer> slot = new EventSlot<>(2);
+        assertEquals(0, slot.tryAdd(1, 2));
+        assertEquals(1, slot.tryAdd(2, 2));
+        assertEquals(-1, slot.tryAdd(3, 2));
+        assertEquals(-1, slot.tryAddAll(new Integer[] {3, 4}, 0, 2, 3));
+        slot.consume(i -> {
+        });
+        //空槽位总是可以放下一整批
+        assertEquals(0, slot.tryAddAll(new Integer[] {3, 4, 5}, 0, 3, 2));
+        assertEquals(3, slot.size());
+    }
+
+    @Test
+    public void drainsWhileProducersAdd() throws InterruptedException {
+        EventSlot<Long> slot = new EventSlot<>(16);
+        int producers = 4;
+        int perProducer = 50_000;
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    slot.add(i);
+                }
+                done.countDown();
+            }).start();
+        }
+        AtomicLong count = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        while (done.getCount() > 0) {
+            slot.consume(i -> {
+                count.incrementAndGet();
+                sum.addAndGet(i);
+            });
+        }
+        slot.consume(i -> {
+            count.incrementAndGet();
+            sum.addAndGet(i);
+        });
+        assertEquals(producers * perProducer, count.get());
+        assertEquals(producers * ((long) perProducer * (perProducer + 1) / 2), sum.get());
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.thinwind.lang.BitUtil;
+import com.github.thinwind.lang.BytesRange;
+
+/**
+ * OffHeapEventRing测试
+ */
+public class OffHeapEventRingTest {
+
+    private static final EventCodec<String> UTF8 = new EventCodec<String>() {
+
+        @Override
+        public BytesRange encode(String event) {
+            return BytesRange.of(BitUtil.toUtf8Bytes(event));
+        }
+
+        @Override
+        public String decode(BytesRange bytes) {
+            return BitUtil.toUtf8String(bytes);
+        }
+    };
+
+    @Test
+    public void roundTripsAcrossChunksAndReuse() {
+        OffHeapEventRing<String> ring = new OffHeapEventRing<>(4, 16, UTF8);
+        List<String> fired = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                //长度不一，跨越块边界
+                String event = round + "-" + "x".repeat(i % 23) + i;
+                expected.add(event);
+                ring.put(1, event);
+            }
+            ring.put(1, "");
+            expected.add("");
+            assertEquals(51, ring.pendingCount());
+            fired.clear();
+            ring.comsume(fired::add);
+            assertEquals(expected, fired);
+            assertEquals(0, ring.pendingCount());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * ParallelDispatcher测试
+ */
+public class ParallelDispatcherTest {
+
+    @Test
+    public void keepsOrderPerKey() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        Map<Integer, Integer> lastSeen = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        //事件是 key * 1_000_000 + 序号
+        ParallelDispatcher<Integer> dispatcher =
+                new ParallelDispatcher<>(pool, 8, e -> e / 1_000_000, e -> {
+                    int key = e / 1_000_000;
+                    int seq = e % 1_000_000;
+                    Integer last = lastSeen.put(key, seq);
+                    if (seq != (last == null ? 0 : last + 1)) {
+                        outOfOrder.incrementAndGet();
+                    }
+                });
+        EventRing<Integer> ring = new EventRing<>(16, 16);
+        int keys = 20;
+        int perKey = 500;
+        int[] next = new int[keys];
+        for (int round = 0; round < perKey / 10; round++) {
+            for (int k = 0; k < keys; k++) {
+                for (int i = 0; i < 10; i++) {
+                    ring.put(1, k * 1_000_000 + next[k]++);
+                }
+            }
+            ring.comsume(dispatcher);
+        }
+        //通道处理满一批之后会重新提交自己，全部出队之后才能关闭线程池
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (dispatcher.backlog() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+        assertEquals(0, dispatcher.backlog());
+        assertEquals(0, outOfOrder.get());
+        for (int k = 0; k < keys; k++) {
+            assertEquals(Integer.valueOf(perKey - 1), lastSeen.get(k));
+        }
+    }
+
+    @Test
+    public void rejectedLaneIsRescheduledOnNextEvent() {
+        List<Runnable> tasks = new ArrayList<>();
+        AtomicInteger rejections = new AtomicInteger(1);
+        List<Integer> handled = new ArrayList<>();
+        ParallelDispatcher<Integer> dispatcher = new ParallelDispatcher<>(task -> {
+            if (rejections.getAndDecrement() > 0) {
+                throw new RejectedExecutionException("busy");
+            }
+            tasks.add(task);
+        }, 1, e -> 0, handled::add);
+        try {
+            dispatcher.accept(1);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        //被拒绝的事件留在通道中
+        assertEquals(1, dispatcher.backlog());
+        dispatcher.accept(2);
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(0, dispatcher.backlog());
+        assertEquals(Arrays.asList(1, 2), handled);
+    }
+}
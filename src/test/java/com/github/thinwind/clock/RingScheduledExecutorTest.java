@@ -0,0 +1,155 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * RingScheduledExecutor测试
+ */
+public class RingScheduledExecutorTest {
+
+    @Test
+    public void runsDelayedTasksNoEarlierThanDeadline() throws Exception {
+        //环的跨度只有7ms，更长的延迟要分多圈
+        RingScheduledExecutor executor = new RingScheduledExecutor(8, 1, TimeUnit.MILLISECONDS);
+        try {
+            for (long delay : new long[] {0, 3, 30}) {
+                long start = System.nanoTime();
+                ScheduledFuture<Long> future =
+                        executor.schedule(System::nanoTime, delay, TimeUnit.MILLISECONDS);
+                assertTrue(future.get(5, TimeUnit.SECONDS) - start >= TimeUnit.MILLISECONDS
+                        .toNanos(delay));
+            }
+            ScheduledFuture<?> cancelled = executor.schedule(() -> {
+                throw new AssertionError();
+            }, 10, TimeUnit.MILLISECONDS);
+            assertTrue(cancelled.cancel(false));
+            Thread.sleep(30);
+            assertTrue(cancelled.isCancelled());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void periodicTasksRepeatUntilCancelled() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        RingScheduledExecutor executor =
+                new RingScheduledExecutor(64, 1, TimeUnit.MILLISECONDS, pool);
+        try {
+            AtomicInteger rate = new AtomicInteger();
+            AtomicInteger delay = new AtomicInteger();
+            CountDownLatch enough = new CountDownLatch(10);
+            ScheduledFuture<?> fixedRate = executor.scheduleAtFixedRate(() -> {
+                rate.incrementAndGet();
+                enough.countDown();
+            }, 0, 2, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> fixedDelay = executor.scheduleWithFixedDelay(
+                    delay::incrementAndGet, 0, 2, TimeUnit.MILLISECONDS);
+            assertTrue(enough.await(5, TimeUnit.SECONDS));
+            assertTrue(fixedRate.cancel(false));
+            assertTrue(fixedDelay.cancel(false));
+            int count = rate.get();
+            Thread.sleep(20);
+            assertTrue(rate.get() <= count + 1);
+            assertTrue(delay.get() > 0);
+        } finally {
+            executor.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shutdownRunsPendingTasksAndCancelsPeriodic() throws Exception {
+        RingScheduledExecutor executor = new RingScheduledExecutor(64, 1, TimeUnit.MILLISECONDS);
+        AtomicInteger ran = new AtomicInteger();
+        executor.schedule(ran::incrementAndGet, 10, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> periodic =
+                executor.scheduleAtFixedRate(() -> { }, 1, 1, TimeUnit.MILLISECONDS);
+        executor.shutdown();
+        assertTrue(executor.isShutdown());
+        assertTrue(periodic.isCancelled());
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, ran.get());
+
+        RingScheduledExecutor other = new RingScheduledExecutor(64, 1, TimeUnit.MILLISECONDS);
+        other.schedule(ran::incrementAndGet, 1, TimeUnit.HOURS);
+        other.schedule(ran::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        List<Runnable> unstarted = other.shutdownNow();
+        assertEquals(2, unstarted.size());
+        assertTrue(other.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(other.isTerminated());
+        assertEquals(1, ran.get());
+    }
+
+    @Test
+    public void shutdownNowFromTaskOnDriverThread() throws Exception {
+        //驱动线程中的异常不会传到测试线程
+        AtomicReference<Throwable> crashed = new AtomicReference<>();
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> crashed.set(e));
+        try {
+            shutdownNowFromTask();
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+        assertNull(crashed.get());
+    }
+
+    private void shutdownNowFromTask() throws Exception {
+        RingScheduledExecutor executor = new RingScheduledExecutor(64, 1, TimeUnit.MILLISECONDS);
+        //先让驱动线程停顿到全部任务放入，之后一次补齐的任务超过一批，关闭发生在advanceTo中间
+        CountDownLatch scheduled = new CountDownLatch(1);
+        executor.schedule(() -> {
+            try {
+                scheduled.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        AtomicReference<Object> result = new AtomicReference<>();
+        ScheduledFuture<?> stopper = executor.schedule(() -> {
+            try {
+                result.set(executor.shutdownNow());
+            } catch (Throwable e) {
+                result.set(e);
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        List<ScheduledFuture<?>> due = new ArrayList<>();
+        for (int i = 0; i < 1100; i++) {
+            due.add(executor.schedule(() -> {
+            }, 10, TimeUnit.MILLISECONDS));
+        }
+        ScheduledFuture<?> pending = executor.schedule(() -> {
+        }, 20, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> farAway = executor.schedule(() -> {
+        }, 1, TimeUnit.HOURS);
+        Thread.sleep(30);
+        scheduled.countDown();
+
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        stopper.get();
+        //在驱动线程中调用时，事件环中的任务在退出前取消，不在返回的列表中
+        assertEquals(Collections.emptyList(), result.get());
+        for (ScheduledFuture<?> future : due) {
+            assertTrue(future.isDone());
+        }
+        assertTrue(pending.isCancelled());
+        assertTrue(farAway.isCancelled());
+        assertTrue(executor.shutdownNow().isEmpty());
+    }
+}
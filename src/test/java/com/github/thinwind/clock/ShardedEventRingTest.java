@@ -0,0 +1,157 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+/**
+ * ShardedEventRing测试
+ */
+public class ShardedEventRingTest {
+
+    @Test
+    public void eachThreadStaysOnItsShard() throws InterruptedException {
+        ShardedEventRing<Integer> ring = new ShardedEventRing<>(4, 16, 4);
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    //事件是 线程 * 100 + 序号
+                    ring.put(1 + i % 5, thread * 100 + i);
+                }
+            });
+            producer.start();
+            producer.join();
+        }
+        for (int s = 0; s < ring.shards(); s++) {
+            assertEquals(10, ring.shard(s).pendingCount());
+            Set<Integer> threads = new HashSet<>();
+            for (int i = 0; i < 5; i++) {
+                ring.shard(s).comsume(e -> threads.add(e / 100));
+            }
+            assertEquals(1, threads.size());
+        }
+        assertEquals(0, ring.pendingCount());
+    }
+
+    @Test
+    public void sameKeyAlwaysOnSameShard() {
+        ShardedEventRing<String> ring = new ShardedEventRing<>(4, 16, 4);
+        for (int key = 0; key < 100; key++) {
+            for (int pos = 1; pos <= 3; pos++) {
+                ring.put("key-" + key, pos, "key-" + key);
+            }
+        }
+        assertEquals(300, ring.pendingCount());
+        Map<String, Set<Integer>> shardsOfKey = new HashMap<>();
+        for (int s = 0; s < ring.shards(); s++) {
+            final int shard = s;
+            for (int i = 0; i < 3; i++) {
+                ring.shard(s).comsume(
+                        key -> shardsOfKey.computeIfAbsent(key, k -> new HashSet<>()).add(shard));
+            }
+        }
+        assertEquals(100, shardsOfKey.size());
+        for (Set<Integer> shards : shardsOfKey.values()) {
+            assertEquals(1, shards.size());
+        }
+    }
+
+    @Test
+    public void sequentialComsumeAdvancesAllShards() throws InterruptedException {
+        ShardedEventRing<Integer> ring = new ShardedEventRing<>(3, 8, 4);
+        for (int t = 0; t < 3; t++) {
+            Thread producer = new Thread(() -> {
+                for (int pos = 1; pos <= 5; pos++) {
+                    ring.put(pos, pos);
+                }
+            });
+            producer.start();
+            producer.join();
+        }
+        for (int tick = 1; tick <= 5; tick++) {
+            List<Integer> fired = new ArrayList<>();
+            ring.comsume(fired::add);
+            assertEquals(Arrays.asList(tick, tick, tick), fired);
+            for (int s = 0; s < ring.shards(); s++) {
+                assertEquals(tick, ring.shard(s).cursor());
+            }
+        }
+        assertEquals(0, ring.pendingCount());
+    }
+
+    @Test
+    public void parallelComsumeDeliversEachEventOnce() throws InterruptedException {
+        ShardedEventRing<Integer> ring = new ShardedEventRing<>(4, 16, 8);
+        int producers = 4;
+        int perProducer = 10_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    ring.put(1 + i % 15, base + i);
+                }
+            });
+            threads.add(producer);
+            producer.start();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        Map<Integer, AtomicInteger> seen = new ConcurrentHashMap<>();
+        Consumer<Integer> counter =
+                e -> seen.computeIfAbsent(e, k -> new AtomicInteger()).incrementAndGet();
+        try {
+            while (threads.stream().anyMatch(Thread::isAlive) || ring.pendingCount() > 0) {
+                ring.comsume(counter, pool);
+            }
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertEquals(producers * perProducer, seen.size());
+        for (AtomicInteger count : seen.values()) {
+            assertEquals(1, count.get());
+        }
+    }
+
+    @Test
+    public void rejectedShardsAreComsumedInline() {
+        ShardedEventRing<String> ring = new ShardedEventRing<>(4, 16, 4);
+        for (int key = 0; key < 40; key++) {
+            ring.put("key-" + key, 1, "key-" + key);
+        }
+        //前两个分片交给线程池执行，之后拒绝
+        AtomicInteger accepted = new AtomicInteger();
+        Executor rejecting = task -> {
+            if (accepted.getAndIncrement() >= 2) {
+                throw new RejectedExecutionException("full");
+            }
+            task.run();
+        };
+        Set<String> fired = ConcurrentHashMap.newKeySet();
+        ring.comsume(fired::add, rejecting);
+        assertEquals(40, fired.size());
+        assertEquals(0, ring.pendingCount());
+        //所有分片推进了同样的tick数
+        for (int s = 0; s < ring.shards(); s++) {
+            assertEquals(1, ring.shard(s).cursor());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * TickDriver测试
+ */
+public class TickDriverTest {
+
+    @Test
+    public void ticksInOrderAndCatchesUp() throws InterruptedException {
+        AtomicLong last = new AtomicLong();
+        //回调在驱动线程上执行，断言失败只会终止驱动线程，这里只记录，在测试线程上检查
+        AtomicLong outOfOrder = new AtomicLong();
+        TickDriver driver = new TickDriver(1, TimeUnit.MILLISECONDS, tick -> {
+            if (tick != last.get() + 1) {
+                outOfOrder.incrementAndGet();
+            }
+            last.set(tick);
+            if (tick == 2) {
+                //模拟一次停顿
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        driver.start();
+        Thread.sleep(100);
+        driver.stop();
+        long elapsedTicks = (System.nanoTime() - driver.getStartNanos()) / driver.getTickNanos();
+        assertEquals(0, outOfOrder.get());
+        assertTrue(driver.currentTick() > 50);
+        assertTrue(driver.currentTick() <= elapsedTicks);
+        assertTrue(driver.getCatchUpTicks() >= 20);
+        assertTrue(driver.getMaxLagNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(last.get(), driver.currentTick());
+    }
+
+    @Test
+    public void stopsRunningWhenOnTickThrows() throws InterruptedException {
+        TickDriver driver = new TickDriver(1, TimeUnit.MILLISECONDS, tick -> {
+            if (tick == 3) {
+                throw new IllegalStateException("tick " + tick);
+            }
+        }, "tick-driver-test");
+        driver.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (driver.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse(driver.isRunning());
+        assertEquals(2, driver.currentTick());
+        //线程已经退出，stop直接返回
+        driver.stop();
+        assertFalse(driver.isRunning());
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.thinwind.clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.thinwind.lang.BitUtil;
+import com.github.thinwind.lang.BytesRange;
+
+/**
+ * TimerJournal测试
+ */
+public class TimerJournalTest {
+
+    private static final EventCodec<String> UTF8 = new EventCodec<String>() {
+
+        @Override
+        public BytesRange encode(String event) {
+            return BytesRange.of(BitUtil.toUtf8Bytes(event));
+        }
+
+        @Override
+        public String decode(BytesRange bytes) {
+            return BitUtil.toUtf8String(bytes);
+        }
+    };
+
+    @Test
+    public void recoversPendingEventsAfterRestart() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        Path file = dir.resolve("timer.journal");
+
+        JournaledEventRing<String> ring =
+                new JournaledEventRing<>(new EventRing<>(16, 4), new TimerJournal<>(file, UTF8, 64));
+        assertEquals(0, ring.recover(h -> {
+        }));
+        ring.put(2, "fired");
+        ring.put(5, "a");
+        EventHandle<String> cancelled = ring.put(6, "cancelled");
+        ring.put(9, "b");
+        ring.cancel(cancelled);
+        List<String> fired = new ArrayList<>();
+        ring.comsume(fired::add);
+        ring.comsume(fired::add);
+        ring.checkpoint();
+        ring.comsume(fired::add);
+        assertEquals(1, fired.size());
+        ring.close();
+
+        //重启，已经过了3个tick
+        EventRing<String> restored = new EventRing<>(16, 4);
+        JournaledEventRing<String> recovered =
+                new JournaledEventRing<>(restored, new TimerJournal<>(file, UTF8, 64));
+        assertEquals(2, recovered.recover(h -> {
+        }));
+        fired.clear();
+        for (int i = 0; i < 6; i++) {
+            recovered.comsume(fired::add);
+            if (i == 1) {
+                assertEquals(1, fired.size());
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        expected.add("a");
+        expected.add("b");
+        assertEquals(expected, fired);
+        recovered.close();
+
+        //全部到期之后不再恢复
+        JournaledEventRing<String> empty = new JournaledEventRing<>(new EventRing<>(16, 4),
+                new TimerJournal<>(file, UTF8, 64));
+        assertEquals(0, empty.recover(h -> {
+        }));
+        empty.close();
+    }
+
+    @Test
+    public void rejectedEventsAreNotJournaled() throws IOException {
+        Path file = Files.createTempDirectory("journal").resolve("timer.journal");
+        List<Object> rejected = new ArrayList<>();
+        EventRing<String> full = new EventRing<>(16, 4, new YieldingWaitStrategy(), null,
+                new RejectingOverflowPolicy(1, rejected::add));
+        JournaledEventRing<String> ring =
+                new JournaledEventRing<>(full, new TimerJournal<>(file, UTF8, 64));
+        assertEquals(0, ring.recover(h -> {
+        }));
+        ring.put(3, "kept");
+        assertNull(ring.put(3, "rejected"));
+        assertEquals(Arrays.asList("rejected"), rejected);
+        ring.close();
+
+        List<String> recovered = new ArrayList<>();
+        JournaledEventRing<String> restored = new JournaledEventRing<>(new EventRing<>(16, 4),
+                new TimerJournal<>(file, UTF8, 64));
+        assertEquals(1, restored.recover(h -> recovered.add(h.event())));
+        assertEquals(Arrays.asList("kept"), recovered);
+        restored.close();
+    }
+
+    @Test
+    public void recoverySkipsEventsRejectedByTheRing() throws IOException {
+        Path file = Files.createTempDirectory("journal").resolve("timer.journal");
+        JournaledEventRing<String> ring = new JournaledEventRing<>(new EventRing<>(16, 4),
+                new TimerJournal<>(file, UTF8, 64));
+        ring.recover(h -> {
+        });
+        ring.put(3, "a");
+        ring.put(3, "b");
+        ring.put(3, "c");
+        ring.close();
+
+        //每个槽位只放得下一个事件
+        List<Object> rejected = new ArrayList<>();
+        EventRing<String> small = new EventRing<>(16, 4, new YieldingWaitStrategy(), null,
+                new RejectingOverflowPolicy(1, rejected::add));
+        List<String> recovered = new ArrayList<>();
+        JournaledEventRing<String> restored =
+                new JournaledEventRing<>(small, new TimerJournal<>(file, UTF8, 64));
+        assertEquals(1, restored.recover(h -> recovered.add(h.event())));
+        assertEquals(Arrays.asList("a"), recovered);
+        assertEquals(Arrays.asList("b", "c"), rejected);
+        restored.close();
+
+        //被拒绝的事件没有写入新的日志
+        recovered.clear();
+        JournaledEventRing<String> again = new JournaledEventRing<>(new EventRing<>(16, 4),
+                new TimerJournal<>(file, UTF8, 64));
+        assertEquals(1, again.recover(h -> recovered.add(h.event())));
+        assertEquals(Arrays.asList("a"), recovered);
+        again.close();
+    }
+
+    @Test
+    public void writerFailureIsReportedToCallers() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        Path file = dir.resolve("timer.journal");
+        //检查点的临时文件被目录占用，写线程在压缩时失败
+        Files.createDirectories(dir.resolve("timer.journal.tmp").resolve("blocked"));
+        TimerJournal<String> journal = new TimerJournal<>(file, UTF8, 64);
+        journal.start();
+        journal.logPut(3, "a");
+        journal.flush();
+        journal.checkpoint();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        UncheckedIOException failure = null;
+        while (failure == null && System.nanoTime() < deadline) {
+            try {
+                journal.logTick(1);
+                Thread.sleep(1);
+            } catch (UncheckedIOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assertNotNull(failure);
+        assertNotNull(failure.getCause());
+        try {
+            journal.flush();
+            fail();
+        } catch (UncheckedIOException expected) {
+            assertSame(failure.getCause(), expected.getCause());
+        }
+        try {
+            journal.close();
+            fail();
+        } catch (IOException expected) {
+            assertSame(failure.getCause(), expected.getCause());
+        }
+    }
+}
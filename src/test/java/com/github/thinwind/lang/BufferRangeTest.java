@@ -0,0 +1,133 @@
+package com.github.thinwind.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * BufferRange测试
+ */
+public class BufferRangeTest {
+
+    private static BufferRange heap(String hex) {
+        byte[] bytes = BitUtil.hex2Bytes(hex);
+        //前面留一个字节，确认下标相对片段开头
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+        buffer.position(1);
+        buffer.put(bytes);
+        return BufferRange.of(buffer, 1, bytes.length);
+    }
+
+    private static BufferRange direct(String hex) {
+        byte[] bytes = BitUtil.hex2Bytes(hex);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 2);
+        buffer.position(2);
+        buffer.put(bytes);
+        return BufferRange.of(buffer, 2, bytes.length);
+    }
+
+    @Test
+    public void subrangeAndJumpOverHeapAndDirectBuffers() {
+        for (BufferRange range : new BufferRange[] {heap("0011223344"), direct("0011223344")}) {
+            assertEquals(5, range.length());
+            assertEquals((byte) 0x22, range.byteAt(2));
+            assertEquals("1122", range.subrange(1, 2).getHexStr());
+            assertEquals("0011", range.subrange(2).getHexStr());
+            assertEquals("3344", range.jump(3).getHexStr());
+            assertEquals((byte) 0x44, range.jump(3).byteAt(1));
+            assertEquals("33", range.jump(3).subrange(1).getHexStr());
+            assertSame(range, range.jump(0));
+            assertSame(range, range.subrange(0, 5));
+            assertSame(BufferRange.NONE, range.jump(5));
+            assertEquals("0011223344", BitUtil.toHexString(range.bytesCopy()));
+            assertEquals(BytesRange.fromHex("0011223344"), range.toRange());
+        }
+    }
+
+    @Test
+    public void compareAndEqualsAcrossBufferKinds() {
+        assertEquals(heap("010203"), direct("010203"));
+        assertEquals(direct("AA010203").jump(1), heap("010203"));
+        assertNotEquals(heap("010203"), direct("010204"));
+        assertNotEquals(heap("0102"), direct("010203"));
+
+        assertEquals(0, heap("010203").compareTo(direct("010203")));
+        assertTrue(heap("80").compareTo(direct("7F")) > 0);
+        assertTrue(direct("0102").compareTo(heap("010203")) < 0);
+        assertTrue(direct("0103").compareTo(heap("010203")) > 0);
+        assertEquals(-1, heap("0102").mismatch(direct("0102")));
+        assertEquals(1, heap("0102").mismatch(direct("0103")));
+        assertEquals(2, heap("0102").mismatch(direct("010203")));
+    }
+
+    @Test
+    public void hashMatchesBytesRange() {
+        BytesRange range = BytesRange.fromHex("00FF7F80");
+        assertEquals(range.hashCode(), heap("00FF7F80").hashCode());
+        assertEquals(range.hashCode(), direct("00FF7F80").hashCode());
+        assertEquals(BytesRange.NONE.hashCode(), BufferRange.NONE.hashCode());
+    }
+
+    @Test
+    public void bitUtilOverloadsReadAnySequence() {
+        String text = "tick \u4f60\u597d";
+        byte[] utf8 = BitUtil.toUtf8Bytes(text);
+        byte[] gbk = BitUtil.toGBKBytes(text);
+        ByteSequence[] utf8Sequences = {BytesRange.of(utf8), heap(BitUtil.toHexString(utf8)),
+                direct(BitUtil.toHexString(utf8))};
+        for (ByteSequence bytes : utf8Sequences) {
+            assertEquals(text, BitUtil.toUtf8String(bytes));
+            assertEquals(BitUtil.toHexString(utf8), BitUtil.toHexString(bytes));
+            assertEquals("tick", BitUtil.toAsciiString(bytes.subrange(4)));
+        }
+        assertEquals(text, BitUtil.toGBKString(direct(BitUtil.toHexString(gbk))));
+        assertEquals(text, BitUtil.toGBKString(heap(BitUtil.toHexString(gbk))));
+
+        ByteSequence number = direct("0102FF");
+        assertEquals(0x0102FF, BitUtil.joinBytesToUnsignedInt(number));
+        assertEquals(BitUtil.joinBytesToUnsignedInt(BytesRange.fromHex("0102FF")),
+                BitUtil.joinBytesToUnsignedInt(number));
+        assertEquals(0xFF, BitUtil.joinBytesToUnsignedInt(number.jump(2)));
+    }
+
+    @Test
+    public void rejectsRangeBeyondLimit() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+        buffer.limit(4);
+        assertEquals(3, BufferRange.of(buffer, 1, 3).bytesCopy().length);
+        try {
+            BufferRange.of(buffer, 2, 3);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            BufferRange.of(buffer, 5, 1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void mapsFileRegion() throws IOException {
+        Path file = Files.createTempFile("buffer-range", ".bin");
+        try {
+            Files.write(file, BitUtil.toAsciiBytes("header:payload"));
+            BufferRange payload = BufferRange.map(file, 7, 7);
+            assertEquals("payload", BitUtil.toAsciiString(payload));
+            assertEquals(BytesRange.of(BitUtil.toAsciiBytes("payload")).hashCode(),
+                    payload.hashCode());
+            assertEquals("load", BitUtil.toAsciiString(payload.jump(3)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.thinwind.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * BytesRange测试
+ */
+public class BytesRangeTest {
+
+    @Test
+    public void hashIsCachedAndEqualRangesHashEqual() {
+        byte[] data = BitUtil.hex2Bytes("00010203FF");
+        BytesRange range = BytesRange.of(data, 1, 3);
+        int hash = range.hashCode();
+        assertEquals(hash, range.hashCode());
+        assertEquals(Arrays.hashCode(range.bytesCopy()), hash);
+
+        BytesRange same = BytesRange.fromHex("010203");
+        assertEquals(range, same);
+        assertEquals(hash, same.hashCode());
+
+        //计算过之后直接使用缓存的值
+        data[1] = 9;
+        assertEquals(hash, range.hashCode());
+
+        BytesRange empty = BytesRange.of(data, 2, 0);
+        assertEquals(BytesRange.NONE, empty);
+        assertEquals(BytesRange.NONE.hashCode(), empty.hashCode());
+    }
+
+    @Test
+    public void equalsComparesContent() {
+        byte[] data = BitUtil.hex2Bytes("0102030102");
+        assertEquals(BytesRange.of(data, 0, 2), BytesRange.of(data, 3, 2));
+        assertNotEquals(BytesRange.of(data, 0, 2), BytesRange.of(data, 1, 2));
+        assertNotEquals(BytesRange.of(data, 0, 2), BytesRange.of(data, 0, 3));
+    }
+
+    @Test
+    public void joinCopiesOnce() {
+        byte[] data = BitUtil.hex2Bytes("0102030405");
+        BytesRange head = BytesRange.of(data, 0, 2);
+        BytesRange tail = BytesRange.of(data, 2, 3);
+        //首尾相接的片段不复制
+        BytesRange joined = BytesRange.join(head, BytesRange.NONE, tail);
+        assertSame(data, joined.data);
+        assertEquals(0, joined.offset);
+        assertEquals(5, joined.length);
+
+        BytesRange other = BytesRange.fromHex("AABB");
+        BytesRange mixed = BytesRange.join(head, other, tail, other);
+        assertEquals("0102AABB030405AABB", mixed.getHexStr());
+        //只分配了一个刚好放下全部片段的数组
+        assertEquals(0, mixed.offset);
+        assertEquals(mixed.length, mixed.data.length);
+        assertNotSame(data, mixed.data);
+        assertNotSame(other.data, mixed.data);
+        assertSame(mixed.data, mixed.getBytes());
+
+        assertSame(BytesRange.NONE, BytesRange.join());
+        assertSame(tail, BytesRange.join(BytesRange.NONE, tail));
+    }
+
+    @Test
+    public void compareToIsUnsignedLexicographic() {
+        assertTrue(BytesRange.fromHex("80").compareTo(BytesRange.fromHex("7F")) > 0);
+        assertTrue(BytesRange.fromHex("FF").compareTo(BytesRange.fromHex("00")) > 0);
+        //前缀小于更长的序列
+        assertTrue(BytesRange.fromHex("0102").compareTo(BytesRange.fromHex("010203")) < 0);
+        assertTrue(BytesRange.fromHex("010203").compareTo(BytesRange.fromHex("0102")) > 0);
+        assertEquals(0, BytesRange.fromHex("0A0B").compareTo(BytesRange.fromHex("0A0B")));
+        assertTrue(BytesRange.NONE.compareTo(BytesRange.fromHex("00")) < 0);
+
+        byte[] data = BitUtil.hex2Bytes("010203");
+        assertTrue(BytesRange.of(data, 0, 2).compareTo(BytesRange.of(data, 0, 3)) < 0);
+
+        List<BytesRange> ranges = new ArrayList<>();
+        for (String hex : new String[] {"FF", "80", "7F01", "7F", "00", "0000"}) {
+            ranges.add(BytesRange.fromHex(hex));
+        }
+        Collections.sort(ranges);
+        List<String> sorted = new ArrayList<>();
+        for (BytesRange range : ranges) {
+            sorted.add(range.getHexStr());
+        }
+        assertEquals(Arrays.asList("00", "0000", "7F", "7F01", "80", "FF"), sorted);
+    }
+
+    @Test
+    public void mismatchFindsFirstDifference() {
+        BytesRange range = BytesRange.fromHex("01020304");
+        assertEquals(-1, range.mismatch(BytesRange.fromHex("01020304")));
+        assertEquals(2, range.mismatch(BytesRange.fromHex("0102")));
+        assertEquals(4, range.mismatch(BytesRange.fromHex("0102030405")));
+        assertEquals(2, range.mismatch(BytesRange.fromHex("0102FF04")));
+        assertEquals(0, range.mismatch(BytesRange.fromHex("FF")));
+        assertEquals(-1, BytesRange.NONE.mismatch(BytesRange.NONE));
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.thinwind.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * BytesRope测试
+ */
+public class BytesRopeTest {
+
+    @Test
+    public void branchingDoesNotMutateOlderRopes() {
+        BytesRope base = BytesRope.of(BytesRange.fromHex("01"), BytesRange.fromHex("0203"));
+        //base是最新的rope，原地追加
+        BytesRope left = base.join(BytesRange.fromHex("AA"));
+        //base已经不是最新的，复制片段引用
+        BytesRope right = base.join(BytesRange.fromHex("BBBB"));
+        BytesRope longer = left.join(BytesRange.fromHex("CC"));
+        BytesRope other = right.join(BytesRange.fromHex("DD"));
+
+        assertEquals("010203", base.getHexStr());
+        assertEquals(2, base.segmentCount());
+        assertEquals("010203AA", left.getHexStr());
+        assertEquals("010203BBBB", right.getHexStr());
+        assertEquals("010203AACC", longer.getHexStr());
+        assertEquals("010203BBBBDD", other.getHexStr());
+        assertEquals(3, base.length());
+        assertEquals(4, left.length());
+
+        //空片段不计入
+        assertSame(left, left.join(BytesRange.NONE));
+        assertSame(left, BytesRope.EMPTY.join(left));
+    }
+
+    @Test
+    public void byteAtCrossesSegmentBoundaries() {
+        byte[] data = BitUtil.hex2Bytes("00112233445566778899");
+        BytesRope rope = BytesRope.of(BytesRange.of(data, 0, 1), BytesRange.NONE,
+                BytesRange.of(data, 1, 4), BytesRange.fromHex("AA"), BytesRange.of(data, 5, 5));
+        byte[] expected = BitUtil.hex2Bytes("0011223344AA5566778899");
+        assertEquals(expected.length, rope.length());
+        assertEquals(4, rope.segmentCount());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], rope.byteAt(i));
+        }
+        try {
+            rope.byteAt(expected.length);
+            fail();
+        } catch (IndexOutOfBoundsException expectedException) {
+        }
+        //合并之后结果不变
+        assertEquals(BytesRange.of(expected), rope.toRange());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], rope.byteAt(i));
+        }
+    }
+
+    @Test
+    public void equalsAndHashMatchBytesRange() {
+        BytesRope rope = BytesRope.of(BytesRange.fromHex("0102"), BytesRange.fromHex("030405"));
+        BytesRope split = BytesRope.of(BytesRange.fromHex("01"), BytesRange.fromHex("0203"),
+                BytesRange.fromHex("0405"));
+        BytesRange flat = BytesRange.fromHex("0102030405");
+        assertEquals(rope, split);
+        assertEquals(flat.hashCode(), rope.hashCode());
+        assertEquals(flat.hashCode(), split.hashCode());
+        assertEquals(flat, rope.toRange());
+        assertNotEquals(rope, BytesRope.of(BytesRange.fromHex("0102030406")));
+        assertNotEquals(rope, BytesRope.of(BytesRange.fromHex("01020304")));
+        //单个片段直接返回，不复制
+        assertSame(flat, BytesRope.of(flat).toRange());
+        assertEquals(BytesRange.NONE, BytesRope.EMPTY.toRange());
+    }
+
+    @Test
+    public void implementsByteSequenceWithoutFlattening() {
+        BytesRope rope = BytesRope.of(BytesRange.fromHex("0011"), BytesRange.fromHex("223344"),
+                BytesRange.fromHex("55"), BytesRange.fromHex("6677"));
+        //截取只涉及首尾两个片段的一部分
+        BytesRope sub = rope.subrange(1, 5);
+        assertEquals("1122334455", sub.getHexStr());
+        assertEquals(3, sub.segmentCount());
+        assertEquals("4455", rope.subrange(4, 2).getHexStr());
+        assertEquals("0011", rope.subrange(2).getHexStr());
+        assertEquals("6677", rope.jump(6).getHexStr());
+        assertSame(rope, rope.jump(0));
+        assertSame(BytesRope.EMPTY, rope.jump(rope.length()));
+
+        byte[] dst = new byte[6];
+        rope.copyTo(1, dst, 1, 5);
+        assertEquals("001122334455", BitUtil.toHexString(dst));
+        rope.copyTo(8, dst, 0, 0);
+        assertEquals("0011223344556677", BitUtil.toHexString(rope.bytesCopy()));
+        try {
+            rope.copyTo(7, dst, 0, 2);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+
+        ByteSequence text = BytesRope.of(BytesRange.of(BitUtil.toUtf8Bytes("tick ")),
+                BytesRange.of(BitUtil.toUtf8Bytes("\u4f60\u597d")));
+        assertEquals("tick \u4f60\u597d", BitUtil.toUtf8String(text));
+        assertEquals("tick", BitUtil.toAsciiString(text.subrange(4)));
+        assertEquals("0011223344556677", BitUtil.toHexString(rope));
+        assertEquals(0x556677, BitUtil.joinBytesToUnsignedInt(rope.jump(5)));
+    }
+}